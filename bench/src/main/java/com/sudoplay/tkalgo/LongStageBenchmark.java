@@ -0,0 +1,97 @@
+package com.sudoplay.tkalgo;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Times separation and corridor intersection in isolation, the stages long
+ * enough to restore their input before every invocation; the shorter stages
+ * are in {@link ShortStageBenchmark}.
+ * <p>
+ * Corridors carve the occupancy grid and filler regions, so before each
+ * invocation they are filled again from the store, outside the timing.
+ * <p>
+ * The defaults take about twenty minutes, most of it separating 10000 cells
+ * by steering, which takes seconds per invocation. Other runs are chosen with
+ * JMH options, for example:
+ * 
+ * <pre>
+ * java -jar bench/target/benchmarks.jar LongStageBenchmark -p stage=SEPARATE -p cellCount=10000,100000 -p separation=PARALLEL_MINIMUM_TRANSLATION
+ * </pre>
+ * 
+ * Steering 100000 cells apart is out of reach, so larger counts need one of
+ * the minimum translation separation modes.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LongStageBenchmark {
+
+  @Param({ "SEPARATE", "INTERSECTION" })
+  public GenerationStage stage;
+
+  @Param({ "100", "1000", "10000" })
+  public int cellCount;
+
+  @Param({ "16", "64" })
+  public int radius;
+
+  @Param({ "1" })
+  public long seed;
+
+  @Param({ "UNIFORM_GRID" })
+  public OverlapMode overlap;
+
+  @Param({ "STEERING" })
+  public SeparationMode separation;
+
+  @Param({ "BUILT_IN" })
+  public TriangulationMode triangulation;
+
+  @Param({ "TILES" })
+  public FillMode fill;
+
+  private StageSnapshot snapshot;
+  private GenerationContext c;
+
+  @Setup(Level.Trial)
+  public void prepare() {
+    DungeonParameters p = new DungeonParameters().setCellCount(cellCount, 0).setRadius(radius)
+        .setOverlapMode(overlap).setSeparationMode(separation).setTriangulationMode(triangulation).setFillMode(fill);
+    snapshot = new StageSnapshot(p, seed, stage);
+    c = snapshot.newContext();
+  }
+
+  @Setup(Level.Invocation)
+  public void restore() {
+    snapshot.restore(c);
+    if (c.occupancy != null) {
+      DungeonGenerator.fillCells(c);
+    }
+  }
+
+  @Benchmark
+  public GenerationContext run() {
+    DungeonGenerator.runStage(stage, c);
+    return c;
+  }
+
+}
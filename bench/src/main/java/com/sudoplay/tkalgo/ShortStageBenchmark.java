@@ -0,0 +1,129 @@
+package com.sudoplay.tkalgo;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.IterationParams;
+
+/**
+ * Times each of the shorter stages of the generation pipeline in isolation.
+ * <p>
+ * Once per trial the stages before the one under test are run and their
+ * output captured, see {@link StageSnapshot}. Many of these stages take well
+ * under a microsecond on small dungeons, less than JMH's own cost of a setup
+ * per invocation, so each iteration is a single shot over a batch: before it,
+ * one context per call in the batch is restored, and the calls then run the
+ * stage on each in turn. Scores are per call. Warmup single shots count
+ * batches rather than time, and the shortest stages would need thousands, so
+ * the trial setup first runs the stage for three seconds. Cell count variance
+ * is zero so the cell count is exact.
+ * <p>
+ * A batch size other than the default needs the same number for
+ * <code>-wbs</code>, <code>-bs</code> and <code>-opi</code>, and
+ * <code>-gc true</code> keeps collections out of the batches.
+ * <p>
+ * Separation and corridor intersection take long enough to be timed one
+ * invocation at a time, so they are in {@link LongStageBenchmark}. Other runs
+ * are chosen with JMH options, for example:
+ * 
+ * <pre>
+ * java -jar bench/target/benchmarks.jar ShortStageBenchmark -p stage=TRIANGULATE -p cellCount=10000
+ * </pre>
+ * 
+ * @author Jason Taylor
+ * 
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10, batchSize = ShortStageBenchmark.BATCH)
+@Measurement(iterations = 20, batchSize = ShortStageBenchmark.BATCH)
+@Fork(1)
+@OperationsPerInvocation(ShortStageBenchmark.BATCH)
+@State(Scope.Thread)
+public class ShortStageBenchmark {
+
+  static final int BATCH = 100;
+
+  private static final long COMPILE_NANOS = TimeUnit.SECONDS.toNanos(3);
+
+  @Param({ "GENERATE", "FILL", "SELECT", "TRIANGULATE", "MINSPAN", "LOOPS", "CONNECTION" })
+  public GenerationStage stage;
+
+  @Param({ "100", "1000", "10000" })
+  public int cellCount;
+
+  @Param({ "16", "64" })
+  public int radius;
+
+  @Param({ "1" })
+  public long seed;
+
+  @Param({ "UNIFORM_GRID" })
+  public OverlapMode overlap;
+
+  @Param({ "STEERING" })
+  public SeparationMode separation;
+
+  @Param({ "BUILT_IN" })
+  public TriangulationMode triangulation;
+
+  @Param({ "TILES" })
+  public FillMode fill;
+
+  private StageSnapshot snapshot;
+  private GenerationContext[] batch = new GenerationContext[0];
+  private int next;
+
+  @Setup(Level.Trial)
+  public void prepare() {
+    DungeonParameters p = new DungeonParameters().setCellCount(cellCount, 0).setRadius(radius)
+        .setOverlapMode(overlap).setSeparationMode(separation).setTriangulationMode(triangulation).setFillMode(fill);
+    snapshot = new StageSnapshot(p, seed, stage);
+
+    GenerationContext c = snapshot.newContext();
+    long end = System.nanoTime() + COMPILE_NANOS;
+    do {
+      snapshot.restore(c);
+      DungeonGenerator.runStage(stage, c);
+    } while (System.nanoTime() < end);
+  }
+
+  @Setup(Level.Iteration)
+  public void restore(IterationParams params) {
+    restore(params.getBatchSize());
+  }
+
+  void restore(int batchSize) {
+    if (batch.length < batchSize) {
+      batch = new GenerationContext[batchSize];
+      for (int i = 0; i < batchSize; i++) {
+        batch[i] = snapshot.newContext();
+      }
+    } else {
+      for (int i = 0; i < batchSize; i++) {
+        snapshot.restore(batch[i]);
+      }
+    }
+    next = 0;
+  }
+
+  @Benchmark
+  public GenerationContext run() {
+    GenerationContext c = batch[next++];
+    DungeonGenerator.runStage(stage, c);
+    return c;
+  }
+
+}
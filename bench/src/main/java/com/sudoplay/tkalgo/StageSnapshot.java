@@ -0,0 +1,123 @@
+package com.sudoplay.tkalgo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Pipeline state as it stands before a stage, kept so that the stage can be
+ * run again and again on the same input.
+ * <p>
+ * The stages before the given one are run once, on a context built from the
+ * parameters and seed, and everything the pipeline consumes is captured.
+ * Restoring puts that state into any context built from the same parameters
+ * and seed. Cells, edges and connections are shared rather than copied; the
+ * stages only move them between lists, apart from room selection setting cell
+ * types, which are put back too. The occupancy grid and filler regions are
+ * shared as well, so a stage that carves them needs them filled again first.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+class StageSnapshot {
+
+  private final DungeonParameters parameters;
+  private final long seed;
+
+  private final long randState;
+  private final int storeSize;
+  private final int[] centerX;
+  private final int[] centerY;
+  private final int[] sizeX;
+  private final int[] sizeY;
+  private final int[] storeType;
+  private final List<Cell> cells;
+  private final int[] cellType;
+  private final List<Cell> rooms;
+  private final List<EdgeList.Edge> edgeList;
+  private final int forestSize;
+  private final List<EdgeList.Edge> minTree;
+  private final List<EdgeList.Edge> discardEdge;
+  private final List<RoomConnection> connections;
+  private final List<Cell> masterCells;
+  private final List<RoomConnection> corridors;
+  private final CellBounds bounds;
+  private final OccupancyGrid occupancy;
+  private final FillerRegionMap fillerRegions;
+
+  StageSnapshot(DungeonParameters parameters, long seed, GenerationStage stage) {
+    this.parameters = parameters;
+    this.seed = seed;
+    GenerationContext c = new GenerationContext(parameters, seed);
+    for (GenerationStage before : GenerationStage.values()) {
+      if (before == stage) {
+        break;
+      }
+      DungeonGenerator.runStage(before, c);
+    }
+
+    randState = c.rand.getState();
+    storeSize = c.store.size;
+    centerX = c.store.centerX.clone();
+    centerY = c.store.centerY.clone();
+    sizeX = c.store.sizeX.clone();
+    sizeY = c.store.sizeY.clone();
+    storeType = c.store.type.clone();
+    cells = new ArrayList<Cell>(c.cells);
+    cellType = new int[cells.size()];
+    for (int i = 0; i < cellType.length; i++) {
+      cellType[i] = cells.get(i).type;
+    }
+    rooms = new ArrayList<Cell>(c.rooms);
+    edgeList = c.edgeList == null ? null : new ArrayList<EdgeList.Edge>(c.edgeList);
+    forestSize = c.forest == null ? -1 : c.forest.size();
+    minTree = new ArrayList<EdgeList.Edge>(c.minTree);
+    discardEdge = new ArrayList<EdgeList.Edge>(c.discardEdge);
+    connections = new ArrayList<RoomConnection>(c.connections);
+    masterCells = new ArrayList<Cell>(c.masterCells);
+    corridors = new ArrayList<RoomConnection>(c.corridors);
+    bounds = c.bounds;
+    occupancy = c.occupancy;
+    fillerRegions = c.fillerRegions;
+  }
+
+  GenerationContext newContext() {
+    return restore(new GenerationContext(parameters, seed));
+  }
+
+  /**
+   * Puts back everything the stages consume or add to.
+   * 
+   * @return the context
+   */
+  GenerationContext restore(GenerationContext c) {
+    c.rand.setState(randState);
+    c.store.resize(storeSize);
+    System.arraycopy(centerX, 0, c.store.centerX, 0, storeSize);
+    System.arraycopy(centerY, 0, c.store.centerY, 0, storeSize);
+    System.arraycopy(sizeX, 0, c.store.sizeX, 0, storeSize);
+    System.arraycopy(sizeY, 0, c.store.sizeY, 0, storeSize);
+    System.arraycopy(storeType, 0, c.store.type, 0, storeSize);
+    reset(c.cells, cells);
+    for (int i = 0; i < cellType.length; i++) {
+      cells.get(i).type = cellType[i];
+    }
+    reset(c.rooms, rooms);
+    c.edgeList = edgeList == null ? null : new ArrayList<EdgeList.Edge>(edgeList);
+    c.forest = forestSize < 0 ? null : new IntDisjointSet(forestSize);
+    reset(c.minTree, minTree);
+    reset(c.discardEdge, discardEdge);
+    reset(c.connections, connections);
+    reset(c.masterCells, masterCells);
+    reset(c.corridors, corridors);
+    c.bounds = bounds;
+    c.occupancy = occupancy;
+    c.fillerRegions = fillerRegions;
+    return c;
+  }
+
+  private static <T> void reset(List<T> list, List<T> captured) {
+    list.clear();
+    list.addAll(captured);
+  }
+
+}
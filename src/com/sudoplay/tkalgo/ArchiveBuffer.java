@@ -0,0 +1,92 @@
+package com.sudoplay.tkalgo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Growable byte buffer with the encodings used by dungeon archives, and the
+ * matching reads from a {@link ByteBuffer}.
+ * <p>
+ * Fixed-width values are big-endian, as {@link ByteBuffer} reads them by
+ * default. Varints hold 7 bits per byte, low bits first; signed values are
+ * zigzag encoded first so small negative numbers stay short.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+final class ArchiveBuffer {
+
+  private byte[] data = new byte[256];
+  private int size;
+
+  int size() {
+    return size;
+  }
+
+  void clear() {
+    size = 0;
+  }
+
+  byte[] toByteArray() {
+    return Arrays.copyOf(data, size);
+  }
+
+  void writeTo(OutputStream out) throws IOException {
+    out.write(data, 0, size);
+  }
+
+  void writeInt(int v) {
+    ensure(4);
+    data[size++] = (byte) (v >>> 24);
+    data[size++] = (byte) (v >>> 16);
+    data[size++] = (byte) (v >>> 8);
+    data[size++] = (byte) v;
+  }
+
+  void writeLong(long v) {
+    writeInt((int) (v >>> 32));
+    writeInt((int) v);
+  }
+
+  /**
+   * Writes v as an unsigned varint of 1 to 5 bytes.
+   */
+  void writeVarInt(int v) {
+    ensure(5);
+    while ((v & ~0x7F) != 0) {
+      data[size++] = (byte) ((v & 0x7F) | 0x80);
+      v >>>= 7;
+    }
+    data[size++] = (byte) v;
+  }
+
+  void writeSignedVarInt(int v) {
+    writeVarInt((v << 1) ^ (v >> 31));
+  }
+
+  static int readVarInt(ByteBuffer in) {
+    int v = 0;
+    int shift = 0;
+    byte b;
+    do {
+      b = in.get();
+      v |= (b & 0x7F) << shift;
+      shift += 7;
+    } while (b < 0);
+    return v;
+  }
+
+  static int readSignedVarInt(ByteBuffer in) {
+    int v = readVarInt(in);
+    return (v >>> 1) ^ -(v & 1);
+  }
+
+  private void ensure(int n) {
+    if (size + n > data.length) {
+      data = Arrays.copyOf(data, Math.max(size + n, data.length << 1));
+    }
+  }
+
+}
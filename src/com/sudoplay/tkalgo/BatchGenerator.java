@@ -0,0 +1,110 @@
+package com.sudoplay.tkalgo;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Generates many dungeons in parallel on a {@link ForkJoinPool}.
+ * <p>
+ * Dungeon k of a batch is generated from {@link #deriveSeed(long, int)} of the
+ * master seed and k, and each run owns its random number generator, so the
+ * batch is identical whatever the number of threads.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class BatchGenerator {
+
+  private final DungeonGenerator generator;
+
+  public BatchGenerator(DungeonParameters parameters) {
+    generator = new DungeonGenerator(parameters);
+  }
+
+  public DungeonParameters getParameters() {
+    return generator.getParameters();
+  }
+
+  /**
+   * Listeners are called concurrently from the pool's threads.
+   */
+  public void addListener(GenerationListener listener) {
+    generator.addListener(listener);
+  }
+
+  public void removeListener(GenerationListener listener) {
+    generator.removeListener(listener);
+  }
+
+  /**
+   * Runs the batch on a new pool with one thread per available processor.
+   */
+  public BatchResult generate(long masterSeed, int count) {
+    return generate(masterSeed, count, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Runs the batch on a new pool of the given parallelism, shut down when the
+   * batch completes.
+   */
+  public BatchResult generate(long masterSeed, int count, int parallelism) {
+    ForkJoinPool pool = new ForkJoinPool(parallelism);
+    try {
+      return generate(masterSeed, count, pool);
+    } finally {
+      pool.shutdown();
+    }
+  }
+
+  public BatchResult generate(long masterSeed, int count, ForkJoinPool pool) {
+    if (count < 0) {
+      throw new IllegalArgumentException("count must not be negative: " + count);
+    }
+    Dungeon[] dungeons = new Dungeon[count];
+    long start = System.nanoTime();
+    pool.invoke(new GenerateTask(masterSeed, dungeons, 0, count));
+    long wallNanos = System.nanoTime() - start;
+    return new BatchResult(masterSeed, dungeons, wallNanos, pool.getParallelism());
+  }
+
+  /**
+   * Mixes the master seed and index with the SplitMix64 finalizer, so
+   * neighbouring indices give unrelated seeds.
+   * 
+   * @return a non-zero seed
+   */
+  public static long deriveSeed(long masterSeed, int index) {
+    return SplitMix64.nonZero(SplitMix64.mix(masterSeed + (index + 1L) * SplitMix64.GOLDEN_GAMMA));
+  }
+
+  @SuppressWarnings("serial")
+  private class GenerateTask extends RecursiveAction {
+
+    private final long masterSeed;
+    private final Dungeon[] dungeons;
+    private final int from;
+    private final int to;
+
+    GenerateTask(long masterSeed, Dungeon[] dungeons, int from, int to) {
+      this.masterSeed = masterSeed;
+      this.dungeons = dungeons;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      // a single run is coarse enough to be a task of its own
+      if (to - from <= 1) {
+        if (to > from) {
+          dungeons[from] = generator.generate(deriveSeed(masterSeed, from));
+        }
+        return;
+      }
+      int mid = (from + to) >>> 1;
+      invokeAll(new GenerateTask(masterSeed, dungeons, from, mid), new GenerateTask(masterSeed, dungeons, mid, to));
+    }
+
+  }
+
+}
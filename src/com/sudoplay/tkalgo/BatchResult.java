@@ -0,0 +1,80 @@
+package com.sudoplay.tkalgo;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The dungeons of a {@link BatchGenerator} run, in index order, with
+ * throughput and stage timing summed over the batch.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class BatchResult {
+
+  private final long masterSeed;
+  private final List<Dungeon> dungeons;
+  private final long wallNanos;
+  private final int parallelism;
+  private final long[] stageNanos = new long[GenerationStage.values().length];
+
+  BatchResult(long masterSeed, Dungeon[] dungeons, long wallNanos, int parallelism) {
+    this.masterSeed = masterSeed;
+    this.dungeons = Collections.unmodifiableList(Arrays.asList(dungeons));
+    this.wallNanos = wallNanos;
+    this.parallelism = parallelism;
+    for (Dungeon dungeon : dungeons) {
+      for (GenerationStage stage : GenerationStage.values()) {
+        stageNanos[stage.ordinal()] += dungeon.getStageNanos(stage);
+      }
+    }
+  }
+
+  public long getMasterSeed() {
+    return masterSeed;
+  }
+
+  /**
+   * @return dungeon k was generated from
+   *         {@link BatchGenerator#deriveSeed(long, int)} of the master seed and
+   *         k
+   */
+  public List<Dungeon> getDungeons() {
+    return dungeons;
+  }
+
+  public long getWallNanos() {
+    return wallNanos;
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  public double getDungeonsPerSecond() {
+    return wallNanos > 0 ? dungeons.size() * 1e9 / wallNanos : 0;
+  }
+
+  /**
+   * @return time spent in the stage summed over every dungeon; this is thread
+   *         time, so the total over all stages can exceed the wall time
+   */
+  public long getStageNanos(GenerationStage stage) {
+    return stageNanos[stage.ordinal()];
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("BatchResult [dungeons=").append(dungeons.size());
+    sb.append(", parallelism=").append(parallelism);
+    sb.append(", wallMillis=").append(wallNanos / 1000000);
+    sb.append(", dungeonsPerSecond=").append(String.format("%.1f", getDungeonsPerSecond()));
+    for (GenerationStage stage : GenerationStage.values()) {
+      sb.append(", ").append(stage).append("=").append(stageNanos[stage.ordinal()] / 1000000).append("ms");
+    }
+    return sb.append("]").toString();
+  }
+
+}
@@ -0,0 +1,23 @@
+package com.sudoplay.tkalgo;
+
+import java.util.Random;
+
+/**
+ * Tests every pair of cells; O(n^2) per pass.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class BruteForceOverlapEngine implements OverlapEngine {
+
+  @Override
+  public boolean isAnyOverlap(CellStore store) {
+    return Generator.isAnyOverlap(store);
+  }
+
+  @Override
+  public void moveCells(Random rand, CellStore store) {
+    Generator.moveCells(rand, store);
+  }
+
+}
@@ -21,6 +21,13 @@ public class Cell {
 
   public int type = TYPE_NONE;
 
+  /**
+   * Stable id, unique among the cells of one generation run, or -1 if none has
+   * been assigned. Unlike {@link #equals(Object)} it does not change when the
+   * cell moves; see {@link CellSet}.
+   */
+  public int id = -1;
+
   public int getLeft() {
     return center.x - size.x;
   }
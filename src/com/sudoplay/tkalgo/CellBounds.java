@@ -37,6 +37,15 @@ public class CellBounds {
     return ymax - ymin;
   }
 
+  static CellBounds get(int xmin, int xmax, int ymin, int ymax) {
+    CellBounds cb = new CellBounds();
+    cb.xmin = xmin;
+    cb.xmax = xmax;
+    cb.ymin = ymin;
+    cb.ymax = ymax;
+    return cb;
+  }
+
   public static CellBounds get(ArrayList<Cell> cells) {
     CellBounds cb = new CellBounds();
     int t;
@@ -61,6 +70,30 @@ public class CellBounds {
     return cb;
   }
 
+  public static CellBounds get(CellStore store) {
+    CellBounds cb = new CellBounds();
+    int t;
+    for (int i = 0; i < store.size(); i++) {
+      t = store.getLeft(i);
+      if (t < cb.xmin) {
+        cb.xmin = t;
+      }
+      t = store.getRight(i);
+      if (t > cb.xmax) {
+        cb.xmax = t;
+      }
+      t = store.getBottom(i);
+      if (t < cb.ymin) {
+        cb.ymin = t;
+      }
+      t = store.getTop(i);
+      if (t > cb.ymax) {
+        cb.ymax = t;
+      }
+    }
+    return cb;
+  }
+
   @Override
   public String toString() {
     return "CellBounds [xmin=" + xmin + ", xmax=" + xmax + ", ymin=" + ymin
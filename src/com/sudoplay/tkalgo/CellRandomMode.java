@@ -0,0 +1,23 @@
+package com.sudoplay.tkalgo;
+
+/**
+ * Selects where the random numbers for generating cells come from.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public enum CellRandomMode {
+
+  /**
+   * Cells draw in turn from the run's {@link XORShiftRandom}, so cell i
+   * depends on every draw made for the cells before it.
+   */
+  SHARED,
+
+  /**
+   * Cell i draws from stream i of a {@link CounterRandom} keyed by the seed,
+   * so cells are independent and are generated in parallel chunks.
+   */
+  PER_CELL
+
+}
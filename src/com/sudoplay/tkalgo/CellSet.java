@@ -0,0 +1,100 @@
+package com.sudoplay.tkalgo;
+
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Set of cells keyed by {@link Cell#id}.
+ * <p>
+ * Membership does not depend on a cell's position, size or type, so it stays
+ * correct while cells move, and every operation is constant time per cell.
+ * Every cell added must have an id.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class CellSet {
+
+  private final BitSet bits = new BitSet();
+
+  public CellSet() {
+    //
+  }
+
+  public CellSet(List<Cell> cells) {
+    addAll(cells);
+  }
+
+  /**
+   * @return true if the cell was not already in the set
+   */
+  public boolean add(Cell cell) {
+    int id = getId(cell);
+    if (bits.get(id)) {
+      return false;
+    }
+    bits.set(id);
+    return true;
+  }
+
+  public void addAll(List<Cell> cells) {
+    for (int i = 0; i < cells.size(); i++) {
+      bits.set(getId(cells.get(i)));
+    }
+  }
+
+  public boolean contains(Cell cell) {
+    return cell.id >= 0 && bits.get(cell.id);
+  }
+
+  public void remove(Cell cell) {
+    if (cell.id >= 0) {
+      bits.clear(cell.id);
+    }
+  }
+
+  public void clear() {
+    bits.clear();
+  }
+
+  public int size() {
+    return bits.cardinality();
+  }
+
+  public boolean isEmpty() {
+    return bits.isEmpty();
+  }
+
+  private static int getId(Cell cell) {
+    if (cell.id < 0) {
+      throw new IllegalArgumentException("Cell has no id: " + cell);
+    }
+    return cell.id;
+  }
+
+  /**
+   * Removes every cell in the set from the list in a single pass, keeping the
+   * order of the remaining cells.
+   * 
+   * @return the number of cells removed
+   */
+  public static int removeAll(List<Cell> cells, CellSet set) {
+    int n = 0;
+    Cell cell;
+    for (int i = 0; i < cells.size(); i++) {
+      cell = cells.get(i);
+      if (!set.contains(cell)) {
+        cells.set(n++, cell);
+      }
+    }
+    int removed = cells.size() - n;
+    cells.subList(n, cells.size()).clear();
+    return removed;
+  }
+
+  @Override
+  public String toString() {
+    return "CellSet " + bits;
+  }
+
+}
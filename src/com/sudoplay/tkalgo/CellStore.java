@@ -0,0 +1,201 @@
+package com.sudoplay.tkalgo;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Primitive, struct-of-arrays storage for cells.
+ * <p>
+ * Each cell is addressed by its index and uses the same geometry as
+ * {@link Cell}. The arrays are read directly by the hot loops in this package
+ * and may be replaced when the store grows, so they must be re-read after
+ * {@link #add(int, int, int, int, int)}.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class CellStore {
+
+  int size;
+  int[] centerX;
+  int[] centerY;
+  int[] sizeX;
+  int[] sizeY;
+  int[] type;
+
+  public CellStore() {
+    this(16);
+  }
+
+  public CellStore(int capacity) {
+    capacity = Math.max(capacity, 1);
+    centerX = new int[capacity];
+    centerY = new int[capacity];
+    sizeX = new int[capacity];
+    sizeY = new int[capacity];
+    type = new int[capacity];
+  }
+
+  public CellStore(List<Cell> cells) {
+    this(cells.size());
+    for (Cell cell : cells) {
+      add(cell);
+    }
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void clear() {
+    size = 0;
+  }
+
+  /**
+   * @return the index of the new cell
+   */
+  public int add(int cx, int cy, int sx, int sy, int t) {
+    if (size == centerX.length) {
+      int capacity = size << 1;
+      centerX = Arrays.copyOf(centerX, capacity);
+      centerY = Arrays.copyOf(centerY, capacity);
+      sizeX = Arrays.copyOf(sizeX, capacity);
+      sizeY = Arrays.copyOf(sizeY, capacity);
+      type = Arrays.copyOf(type, capacity);
+    }
+    centerX[size] = cx;
+    centerY[size] = cy;
+    sizeX[size] = sx;
+    sizeY[size] = sy;
+    type[size] = t;
+    return size++;
+  }
+
+  /**
+   * Sets the size, growing the arrays if needed, so cells can be written by
+   * index with {@link #set(int, int, int, int, int, int)}.
+   */
+  public void resize(int newSize) {
+    if (newSize > centerX.length) {
+      int capacity = Math.max(newSize, centerX.length << 1);
+      centerX = Arrays.copyOf(centerX, capacity);
+      centerY = Arrays.copyOf(centerY, capacity);
+      sizeX = Arrays.copyOf(sizeX, capacity);
+      sizeY = Arrays.copyOf(sizeY, capacity);
+      type = Arrays.copyOf(type, capacity);
+    }
+    size = newSize;
+  }
+
+  public void set(int i, int cx, int cy, int sx, int sy, int t) {
+    centerX[i] = cx;
+    centerY[i] = cy;
+    sizeX[i] = sx;
+    sizeY[i] = sy;
+    type[i] = t;
+  }
+
+  public int add(Cell cell) {
+    return add(cell.center.x, cell.center.y, cell.size.x, cell.size.y, cell.type);
+  }
+
+  public int getCenterX(int i) {
+    return centerX[i];
+  }
+
+  public int getCenterY(int i) {
+    return centerY[i];
+  }
+
+  public void setCenter(int i, int x, int y) {
+    centerX[i] = x;
+    centerY[i] = y;
+  }
+
+  public int getSizeX(int i) {
+    return sizeX[i];
+  }
+
+  public int getSizeY(int i) {
+    return sizeY[i];
+  }
+
+  public int getType(int i) {
+    return type[i];
+  }
+
+  public void setType(int i, int t) {
+    type[i] = t;
+  }
+
+  public int getLeft(int i) {
+    return centerX[i] - sizeX[i];
+  }
+
+  public int getRight(int i) {
+    return centerX[i] + sizeX[i] + 1;
+  }
+
+  public int getTop(int i) {
+    return centerY[i] + sizeY[i] + 1;
+  }
+
+  public int getBottom(int i) {
+    return centerY[i] - sizeY[i];
+  }
+
+  public int getWidth(int i) {
+    return sizeX[i] * 2 + 1;
+  }
+
+  public int getHeight(int i) {
+    return sizeY[i] * 2 + 1;
+  }
+
+  public int getArea(int i) {
+    return sizeX[i] * sizeY[i] * 4;
+  }
+
+  /**
+   * @return a new cell object holding a copy of the cell at the given index,
+   *         with the index as its id
+   */
+  public Cell toCell(int i) {
+    Cell cell = new Cell();
+    cell.center.set(centerX[i], centerY[i]);
+    cell.size.set(sizeX[i], sizeY[i]);
+    cell.type = type[i];
+    cell.id = i;
+    return cell;
+  }
+
+  /**
+   * Appends a new cell object for every cell in the store.
+   */
+  public List<Cell> toCells(List<Cell> store) {
+    for (int i = 0; i < size; i++) {
+      store.add(toCell(i));
+    }
+    return store;
+  }
+
+  /**
+   * Writes position, size and type back into an existing list of cell objects
+   * with the same indices as this store.
+   */
+  public void copyTo(List<Cell> cells) {
+    Cell cell;
+    for (int i = 0; i < size; i++) {
+      cell = cells.get(i);
+      cell.center.set(centerX[i], centerY[i]);
+      cell.size.set(sizeX[i], sizeY[i]);
+      cell.type = type[i];
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "CellStore [size=" + size + "]";
+  }
+
+}
@@ -0,0 +1,94 @@
+package com.sudoplay.tkalgo;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One generated chunk of a {@link ChunkedWorld}.
+ * <p>
+ * The tile map covers exactly the chunk and holds the dungeon's master cells
+ * plus the stitch corridors leading from each portal to the room nearest the
+ * middle of the chunk, and any corridors joining parts of the dungeon that
+ * clipping cut off.
+ * Immutable apart from the tile map, which callers should not write to.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class Chunk {
+
+  private final int chunkX;
+  private final int chunkY;
+  private final long seed;
+  private final Dungeon dungeon;
+  private final TileMap tileMap;
+  private final List<Portal> portals;
+  private final List<RoomConnection> stitches;
+  private final boolean clipped;
+
+  Chunk(int chunkX, int chunkY, long seed, Dungeon dungeon, TileMap tileMap, List<Portal> portals,
+      List<RoomConnection> stitches, boolean clipped) {
+    this.chunkX = chunkX;
+    this.chunkY = chunkY;
+    this.seed = seed;
+    this.dungeon = dungeon;
+    this.tileMap = tileMap;
+    this.portals = Collections.unmodifiableList(portals);
+    this.stitches = Collections.unmodifiableList(stitches);
+    this.clipped = clipped;
+  }
+
+  public int getChunkX() {
+    return chunkX;
+  }
+
+  public int getChunkY() {
+    return chunkY;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public Dungeon getDungeon() {
+    return dungeon;
+  }
+
+  public TileMap getTileMap() {
+    return tileMap;
+  }
+
+  /**
+   * @return one portal per side, in {@link Portal.Side} order
+   */
+  public List<Portal> getPortals() {
+    return portals;
+  }
+
+  public Portal getPortal(Portal.Side side) {
+    return portals.get(side.ordinal());
+  }
+
+  /**
+   * @return the corridors from each portal, in {@link Portal.Side} order
+   */
+  public List<RoomConnection> getStitches() {
+    return stitches;
+  }
+
+  /**
+   * @return true if some master cell reached outside the chunk and was cut off
+   *         at its border; the chunk is still connected, but a larger chunk
+   *         size or a smaller radius keeps the dungeon whole
+   */
+  public boolean isClipped() {
+    return clipped;
+  }
+
+  @Override
+  public String toString() {
+    return "Chunk [chunkX=" + chunkX + ", chunkY=" + chunkY + ", seed=" + seed + ", clipped=" + clipped + ", "
+        + dungeon + "]";
+  }
+
+}
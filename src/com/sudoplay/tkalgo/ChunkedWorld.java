@@ -0,0 +1,365 @@
+package com.sudoplay.tkalgo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import com.sudoplay.math.Vector2i;
+
+/**
+ * An unbounded world of square chunks, each generated on demand.
+ * <p>
+ * Chunk (cx, cy) covers tiles [cx * size, (cx + 1) * size) in x and likewise
+ * in y. It is generated from a seed derived from the world seed and its
+ * coordinates, with the area center moved to the middle of the chunk. Each
+ * border between two chunks has a portal whose position is derived from the
+ * world seed and the border alone, so both chunks agree on it without either
+ * being generated first. Each chunk carves a corridor from its four portals to
+ * its room nearest the middle whose center lies inside the chunk, which joins
+ * the chunks up. A dungeon whose cells reach past the chunk is cut off at its
+ * border, which can cut its own corridors too, so every part of the chunk
+ * left apart from that room is then joined to it by a corridor.
+ * <p>
+ * A chunk is generated at most once while loaded, whichever threads ask for
+ * it. {@link #prefetch(int, int, int)} queues the chunks around a position on
+ * the executor so they are ready before they are needed. Every chunk is the
+ * same whatever the order or thread it was generated on.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class ChunkedWorld {
+
+  private static final int SALT_CHUNK = 0;
+  private static final int SALT_VERTICAL_BORDER = 1;
+  private static final int SALT_HORIZONTAL_BORDER = 2;
+
+  private final long worldSeed;
+  private final int chunkSize;
+  private final DungeonParameters parameters;
+  private final Executor executor;
+  private final int margin;
+  private final ConcurrentHashMap<Long, FutureTask<Chunk>> chunks = new ConcurrentHashMap<Long, FutureTask<Chunk>>();
+
+  /**
+   * @param parameters
+   *          used for every chunk; the area center is replaced per chunk and
+   *          the output mode is always {@link OutputMode#CELLS}
+   * @param executor
+   *          runs prefetched chunks
+   */
+  public ChunkedWorld(long worldSeed, int chunkSize, DungeonParameters parameters, Executor executor) {
+    this.worldSeed = worldSeed;
+    this.chunkSize = chunkSize;
+    this.parameters = new DungeonParameters(parameters).setOutputMode(OutputMode.CELLS);
+    this.executor = executor;
+    margin = parameters.getCorridorWidth() + 1;
+    if (chunkSize <= margin * 2) {
+      throw new IllegalArgumentException("chunkSize must be greater than " + margin * 2 + ": " + chunkSize);
+    }
+  }
+
+  public long getWorldSeed() {
+    return worldSeed;
+  }
+
+  public int getChunkSize() {
+    return chunkSize;
+  }
+
+  /**
+   * @return the x or y chunk coordinate of a tile coordinate
+   */
+  public int toChunk(int tile) {
+    return tile >= 0 ? tile / chunkSize : -((-tile - 1) / chunkSize) - 1;
+  }
+
+  /**
+   * Returns the chunk, generating it on the calling thread if it is not
+   * loaded, or waiting if another thread is generating it.
+   */
+  public Chunk getChunk(int cx, int cy) {
+    FutureTask<Chunk> task = getTask(cx, cy);
+    task.run();
+    try {
+      return task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted waiting for chunk " + cx + ", " + cy, e);
+    } catch (ExecutionException e) {
+      // let a later call try again
+      chunks.remove(key(cx, cy), task);
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+  }
+
+  /**
+   * @return the chunk if it has finished generating, otherwise null
+   */
+  public Chunk getChunkIfLoaded(int cx, int cy) {
+    FutureTask<Chunk> task = chunks.get(key(cx, cy));
+    if (task == null || !task.isDone()) {
+      return null;
+    }
+    return getChunk(cx, cy);
+  }
+
+  /**
+   * @return the tile at world tile coordinates, generating its chunk if needed
+   */
+  public int getTile(int x, int y) {
+    return getChunk(toChunk(x), toChunk(y)).getTileMap().get(x, y);
+  }
+
+  /**
+   * Queues every chunk within radius chunks of (cx, cy), nearest first, that
+   * is not already loaded or queued.
+   */
+  public void prefetch(int cx, int cy, int radius) {
+    for (int r = 0; r <= radius; r++) {
+      for (int y = cy - r; y <= cy + r; y++) {
+        for (int x = cx - r; x <= cx + r; x++) {
+          if (Math.max(Math.abs(x - cx), Math.abs(y - cy)) != r) {
+            continue;
+          }
+          Long key = key(x, y);
+          if (!chunks.containsKey(key)) {
+            FutureTask<Chunk> task = newTask(x, y);
+            if (chunks.putIfAbsent(key, task) == null) {
+              executor.execute(task);
+            }
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Drops a chunk; it is generated again, identically, if asked for.
+   * 
+   * @return true if the chunk was loaded or queued
+   */
+  public boolean unload(int cx, int cy) {
+    return chunks.remove(key(cx, cy)) != null;
+  }
+
+  public int getLoadedCount() {
+    return chunks.size();
+  }
+
+  public long getChunkSeed(int cx, int cy) {
+    return SplitMix64.nonZero(hash(cx, cy, SALT_CHUNK));
+  }
+
+  /**
+   * Computes a portal without generating anything.
+   */
+  public Portal getPortal(int cx, int cy, Portal.Side side) {
+    int left = cx * chunkSize;
+    int bottom = cy * chunkSize;
+    int span = chunkSize - margin * 2;
+    switch (side) {
+    case NORTH:
+      return new Portal(side, left + margin + offset(hash(cx, cy, SALT_HORIZONTAL_BORDER), span), bottom + chunkSize
+          - 1);
+    case SOUTH:
+      return new Portal(side, left + margin + offset(hash(cx, cy - 1, SALT_HORIZONTAL_BORDER), span), bottom);
+    case EAST:
+      return new Portal(side, left + chunkSize - 1, bottom + margin + offset(hash(cx, cy, SALT_VERTICAL_BORDER), span));
+    case WEST:
+    default:
+      return new Portal(side, left, bottom + margin + offset(hash(cx - 1, cy, SALT_VERTICAL_BORDER), span));
+    }
+  }
+
+  private FutureTask<Chunk> getTask(int cx, int cy) {
+    Long key = key(cx, cy);
+    FutureTask<Chunk> task = chunks.get(key);
+    if (task == null) {
+      FutureTask<Chunk> created = newTask(cx, cy);
+      task = chunks.putIfAbsent(key, created);
+      if (task == null) {
+        task = created;
+      }
+    }
+    return task;
+  }
+
+  private FutureTask<Chunk> newTask(final int cx, final int cy) {
+    return new FutureTask<Chunk>(new Callable<Chunk>() {
+      @Override
+      public Chunk call() {
+        return generate(cx, cy);
+      }
+    });
+  }
+
+  private Chunk generate(int cx, int cy) {
+    int left = cx * chunkSize;
+    int bottom = cy * chunkSize;
+    long seed = getChunkSeed(cx, cy);
+    DungeonParameters p = new DungeonParameters(parameters).setAreaCenter(left + chunkSize / 2, bottom + chunkSize
+        / 2);
+    Dungeon dungeon = new DungeonGenerator(p).generate(seed);
+
+    CellBounds chunkBounds = CellBounds.get(left, left + chunkSize, bottom, bottom + chunkSize);
+    TileMap map = TileMap.get(dungeon.getMasterCells(), chunkBounds, TileMap.DEFAULT_BITS_PER_TILE);
+    boolean clipped = false;
+    for (Cell cell : dungeon.getMasterCells()) {
+      if (cell.getLeft() < left || cell.getRight() > left + chunkSize || cell.getBottom() < bottom
+          || cell.getTop() > bottom + chunkSize) {
+        clipped = true;
+        break;
+      }
+    }
+
+    Vector2i target = getNearestRoomCenter(dungeon.getRooms(), chunkBounds, left + chunkSize / 2, bottom + chunkSize
+        / 2);
+    int width = parameters.getCorridorWidth();
+    List<Portal> portals = new ArrayList<Portal>(4);
+    List<RoomConnection> stitches = new ArrayList<RoomConnection>(4);
+    for (Portal.Side side : Portal.Side.values()) {
+      Portal portal = getPortal(cx, cy, side);
+      Vector2i start = new Vector2i(portal.getX(), portal.getY());
+      Vector2i elbow;
+      // leave the border at a right angle
+      if (side == Portal.Side.EAST || side == Portal.Side.WEST) {
+        elbow = new Vector2i(target.x, start.y);
+      } else {
+        elbow = new Vector2i(start.x, target.y);
+      }
+      carve(map, start, elbow, width);
+      carve(map, elbow, target, width);
+      portals.add(portal);
+      stitches.add(RoomConnection.get(start, elbow, target));
+    }
+    join(map, target, width);
+    return new Chunk(cx, cy, seed, dungeon, map, portals, stitches, clipped);
+  }
+
+  /**
+   * @return the center of the room nearest (x, y) among those centered inside
+   *         the bounds, or (x, y) if there are none
+   */
+  private static Vector2i getNearestRoomCenter(List<Cell> rooms, CellBounds bounds, int x, int y) {
+    Vector2i best = new Vector2i(x, y);
+    long bestDistance = Long.MAX_VALUE;
+    for (Cell room : rooms) {
+      if (room.center.x < bounds.getLeft() || room.center.x >= bounds.getRight()
+          || room.center.y < bounds.getBottom() || room.center.y >= bounds.getTop()) {
+        continue;
+      }
+      long dx = room.center.x - x;
+      long dy = room.center.y - y;
+      long d = dx * dx + dy * dy;
+      if (d < bestDistance) {
+        bestDistance = d;
+        best = new Vector2i(room.center);
+      }
+    }
+    return best;
+  }
+
+  /**
+   * Carves a corridor to the target, which lies inside the map, from the first
+   * tile in row order of each part of the map not connected to it.
+   */
+  private static void join(TileMap map, Vector2i target, int width) {
+    int w = map.getWidth();
+    int h = map.getHeight();
+    boolean[] reached = new boolean[w * h];
+    int[] stack = new int[w * h];
+    int tx0 = target.x - map.getLeft();
+    int ty0 = target.y - map.getBottom();
+    reach(map, reached, stack, tx0, ty0);
+    for (int ty = 0; ty < h; ty++) {
+      for (int tx = 0; tx < w; tx++) {
+        if (reached[ty * w + tx] || map.get(map.getLeft() + tx, map.getBottom() + ty) == TileMap.EMPTY) {
+          continue;
+        }
+        Vector2i start = new Vector2i(map.getLeft() + tx, map.getBottom() + ty);
+        Vector2i elbow = new Vector2i(target.x, start.y);
+        carve(map, start, elbow, width);
+        carve(map, elbow, target, width);
+        // the corridor may have joined parts not visited yet as well
+        reach(map, reached, stack, tx0, ty0);
+      }
+    }
+  }
+
+  /**
+   * Marks the tiles connected to tile (tx, ty), relative to the map, as
+   * reached, and no others.
+   */
+  private static void reach(TileMap map, boolean[] reached, int[] stack, int tx, int ty) {
+    int w = map.getWidth();
+    int h = map.getHeight();
+    if (map.get(map.getLeft() + tx, map.getBottom() + ty) == TileMap.EMPTY) {
+      return;
+    }
+    Arrays.fill(reached, false);
+    int size = 0;
+    reached[ty * w + tx] = true;
+    stack[size++] = ty * w + tx;
+    while (size > 0) {
+      int k = stack[--size];
+      int x = k % w;
+      int y = k / w;
+      for (int d = 0; d < 4; d++) {
+        int nx = x + (d == 0 ? 1 : (d == 1 ? -1 : 0));
+        int ny = y + (d == 2 ? 1 : (d == 3 ? -1 : 0));
+        if (nx < 0 || ny < 0 || nx >= w || ny >= h) {
+          continue;
+        }
+        int nk = ny * w + nx;
+        if (!reached[nk] && map.get(map.getLeft() + nx, map.getBottom() + ny) != TileMap.EMPTY) {
+          reached[nk] = true;
+          stack[size++] = nk;
+        }
+      }
+    }
+  }
+
+  /**
+   * Marks empty tiles within width of the axis-aligned segment as corridor.
+   */
+  private static void carve(TileMap map, Vector2i p1, Vector2i p2, int width) {
+    int x1 = Math.min(p1.x, p2.x) - width;
+    int x2 = Math.max(p1.x, p2.x) + width;
+    int y1 = Math.min(p1.y, p2.y) - width;
+    int y2 = Math.max(p1.y, p2.y) + width;
+    for (int y = y1; y <= y2; y++) {
+      for (int x = x1; x <= x2; x++) {
+        if (map.get(x, y) == TileMap.EMPTY) {
+          map.set(x, y, TileMap.CORRIDOR);
+        }
+      }
+    }
+  }
+
+  private long hash(int cx, int cy, int salt) {
+    long z = SplitMix64.mix(worldSeed + (salt + 1L) * SplitMix64.GOLDEN_GAMMA);
+    return SplitMix64.mix(z + (((long) cx << 32) | (cy & 0xFFFFFFFFL)));
+  }
+
+  private static int offset(long hash, int span) {
+    return (int) ((hash >>> 1) % span);
+  }
+
+  private static Long key(int cx, int cy) {
+    return ((long) cx << 32) | (cy & 0xFFFFFFFFL);
+  }
+
+}
@@ -0,0 +1,198 @@
+package com.sudoplay.tkalgo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.sudoplay.math.Vector2i;
+
+/**
+ * Carves corridors through a label raster in which every tile stores the id
+ * of the cell covering it.
+ * <p>
+ * A connection is drawn into a one bit per tile mask as a thin polyline and
+ * dilated by the corridor width with shifts and ORs, horizontally within each
+ * row and then vertically across rows. The dilated mask is walked once;
+ * covered tiles name the cells they belong to and vacant tiles become filler
+ * cells. Cell ids are indices into the {@link CellStore} the carver was built
+ * from; filler cells are given ids past the end of the store, derived from
+ * their tile.
+ * <p>
+ * Not thread safe.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class CorridorCarver {
+
+  private final OccupancyGrid occupancy;
+  private final int left;
+  private final int bottom;
+  private final int width;
+  private final int height;
+  private final int wordsPerRow;
+  private final long lastWordMask;
+  private final int fillerId;
+
+  private final int[] labels;
+  private long[] line = new long[0];
+  private long[] mask = new long[0];
+
+  private final BitSet carved = new BitSet();
+  private final BitSet touched = new BitSet();
+
+  /**
+   * @param occupancy
+   *          filler membership; carved filler tiles are marked as occupied in
+   *          it
+   */
+  public CorridorCarver(CellStore store, OccupancyGrid occupancy) {
+    this.occupancy = occupancy;
+    left = occupancy.getLeft();
+    bottom = occupancy.getBottom();
+    width = occupancy.getWidth();
+    height = occupancy.getHeight();
+    wordsPerRow = (width + 63) >>> 6;
+    lastWordMask = (width & 63) == 0 ? -1L : (1L << (width & 63)) - 1;
+    labels = new int[width * height];
+    fillerId = store.size();
+    // stamp in reverse so the first cell covering a tile owns it, as with
+    // Generator.getCell
+    for (int i = store.size() - 1; i >= 0; i--) {
+      int x1 = Math.max(store.getLeft(i) - left, 0);
+      int x2 = Math.min(store.getRight(i) - left, width);
+      int y1 = Math.max(store.getBottom(i) - bottom, 0);
+      int y2 = Math.min(store.getTop(i) - bottom, height);
+      for (int y = y1; y < y2; y++) {
+        int row = y * width;
+        for (int x = x1; x < x2; x++) {
+          labels[row + x] = i + 1;
+        }
+      }
+    }
+  }
+
+  /**
+   * Carves a single connection.
+   * <p>
+   * Cells are only reported by the first connection that touches them, and
+   * each vacant tile only produces a filler cell once.
+   * 
+   * @param fillerStore
+   *          receives a new filler cell for each vacant tile under the
+   *          corridor, in row order
+   * @return the ids of the cells first touched by this connection; the set is
+   *         reused by the next call
+   */
+  public BitSet carve(RoomConnection connection, int extraWidth, ArrayList<Cell> fillerStore) {
+    touched.clear();
+    ArrayList<Vector2i> points = connection.getPoints();
+
+    int xmin = Integer.MAX_VALUE, xmax = Integer.MIN_VALUE;
+    int ymin = Integer.MAX_VALUE, ymax = Integer.MIN_VALUE;
+    for (Vector2i p : points) {
+      xmin = Math.min(xmin, p.x);
+      xmax = Math.max(xmax, p.x);
+      ymin = Math.min(ymin, p.y);
+      ymax = Math.max(ymax, p.y);
+    }
+    // rows of the dilated corridor, clipped to the raster
+    int y1 = Math.max(ymin - extraWidth - bottom, 0);
+    int y2 = Math.min(ymax + extraWidth - bottom + 1, height);
+    // rows of the thin line, which may reach extraWidth rows past the raster
+    int ly1 = ymin - bottom;
+    int rows = ymax - ymin + 1;
+    if (y1 >= y2 || xmax + extraWidth < left || xmin - extraWidth >= left + width) {
+      return touched;
+    }
+    if (line.length < rows * wordsPerRow) {
+      line = new long[rows * wordsPerRow];
+    }
+    if (mask.length < (y2 - y1) * wordsPerRow) {
+      mask = new long[(y2 - y1) * wordsPerRow];
+    }
+    Arrays.fill(line, 0, rows * wordsPerRow, 0L);
+
+    // thin polyline
+    for (int k = 1; k < points.size(); k++) {
+      Vector2i p1 = points.get(k - 1);
+      Vector2i p2 = points.get(k);
+      if (p1.x == p2.x) {
+        for (int y = Math.min(p1.y, p2.y); y <= Math.max(p1.y, p2.y); y++) {
+          setLineBit(y - bottom - ly1, p1.x - left);
+        }
+      } else if (p1.y == p2.y) {
+        for (int x = Math.min(p1.x, p2.x); x <= Math.max(p1.x, p2.x); x++) {
+          setLineBit(p1.y - bottom - ly1, x - left);
+        }
+      }
+    }
+
+    // horizontal dilation within each row
+    for (int r = 0; r < rows; r++) {
+      int row = r * wordsPerRow;
+      for (int n = 0; n < extraWidth; n++) {
+        long carry = 0;
+        for (int w = 0; w < wordsPerRow; w++) {
+          long word = line[row + w];
+          long next = w + 1 < wordsPerRow ? line[row + w + 1] : 0L;
+          line[row + w] = word | (word << 1) | carry | (word >>> 1) | (next << 63);
+          carry = word >>> 63;
+        }
+        line[row + wordsPerRow - 1] &= lastWordMask;
+      }
+    }
+
+    // vertical dilation across rows
+    for (int y = y1; y < y2; y++) {
+      int row = (y - y1) * wordsPerRow;
+      int r1 = Math.max(y - extraWidth - ly1, 0);
+      int r2 = Math.min(y + extraWidth - ly1, rows - 1);
+      for (int w = 0; w < wordsPerRow; w++) {
+        long word = 0;
+        for (int r = r1; r <= r2; r++) {
+          word |= line[r * wordsPerRow + w];
+        }
+        mask[row + w] = word;
+      }
+    }
+
+    // single pass over the corridor tiles
+    for (int y = y1; y < y2; y++) {
+      int row = (y - y1) * wordsPerRow;
+      for (int w = 0; w < wordsPerRow; w++) {
+        long word = mask[row + w];
+        while (word != 0) {
+          int x = (w << 6) + Long.numberOfTrailingZeros(word);
+          word &= word - 1;
+          int label = labels[y * width + x];
+          if (label > 0) {
+            if (!carved.get(label - 1)) {
+              carved.set(label - 1);
+              touched.set(label - 1);
+            }
+          } else if (occupancy.isVacant(x + left, y + bottom)) {
+            occupancy.set(x + left, y + bottom);
+            Cell cell = new Cell();
+            cell.center.set(x + left, y + bottom);
+            cell.type = Cell.TYPE_FILL;
+            cell.id = fillerId + y * width + x;
+            fillerStore.add(cell);
+          }
+        }
+      }
+    }
+    return touched;
+  }
+
+  /**
+   * Sets a bit in the thin line. Connections run between room centers, so
+   * columns outside the raster do not occur and are dropped.
+   */
+  private void setLineBit(int r, int x) {
+    if (x >= 0 && x < width) {
+      line[r * wordsPerRow + (x >>> 6)] |= 1L << x;
+    }
+  }
+
+}
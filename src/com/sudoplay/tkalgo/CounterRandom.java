@@ -0,0 +1,87 @@
+package com.sudoplay.tkalgo;
+
+import java.util.Random;
+
+/**
+ * Counter-based random numbers keyed by (seed, stream, draw).
+ * <p>
+ * Draw d of stream s is the SplitMix64 finalizer applied to a key mixed from
+ * the seed and s, plus d times the golden gamma. Nothing depends on earlier
+ * streams, so any stream can be reproduced on its own, on any thread and in
+ * any order: give every cell its own stream and cells can be generated in
+ * parallel with the same result.
+ * <p>
+ * Not thread safe; use one instance per thread and call
+ * {@link #setStream(long)} to move between streams.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+@SuppressWarnings("serial")
+public class CounterRandom extends Random {
+
+  private static final long STREAM_GAMMA = 0xD1B54A32D192ED03L;
+
+  private final long seed;
+  private long stream;
+  private long streamKey;
+  private long counter;
+
+  public CounterRandom(long seed) {
+    this.seed = SplitMix64.mix(seed);
+    setStream(0);
+  }
+
+  public CounterRandom(long seed, long stream) {
+    this.seed = SplitMix64.mix(seed);
+    setStream(stream);
+  }
+
+  /**
+   * Selects a stream and restarts it from its first draw.
+   */
+  public void setStream(long stream) {
+    this.stream = stream;
+    streamKey = SplitMix64.mix(seed + (stream + 1) * STREAM_GAMMA);
+    counter = 0;
+  }
+
+  public long getStream() {
+    return stream;
+  }
+
+  /**
+   * @return the number of 64-bit draws taken from the current stream
+   */
+  public long getCounter() {
+    return counter;
+  }
+
+  /**
+   * Has no effect; the generator is keyed at construction.
+   */
+  @Override
+  public void setSeed(long seed) {
+    //
+  }
+
+  @Override
+  protected int next(int nbits) {
+    return (int) (nextLong() >>> (64 - nbits));
+  }
+
+  @Override
+  public long nextLong() {
+    return SplitMix64.mix(streamKey + ++counter * SplitMix64.GOLDEN_GAMMA);
+  }
+
+  /**
+   * Ziggurat sample; unlike {@link Random#nextGaussian()} no value is cached
+   * between calls, so a stream restarts cleanly.
+   */
+  @Override
+  public double nextGaussian() {
+    return Ziggurat.nextGaussian(this);
+  }
+
+}
@@ -0,0 +1,716 @@
+package com.sudoplay.tkalgo;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+
+/**
+ * Delaunay triangulation of integer points using a sweep-hull.
+ * <p>
+ * Points are added in order of distance from a seed triangle near the middle
+ * of the set. Each new point is joined to the part of the convex hull it can
+ * see and the new triangles are legalized by edge flips, giving O(n log n)
+ * overall. Both predicates are exact over the whole int range. Orientation is
+ * computed in long arithmetic, or with BigInteger for coordinate spans of 2^31
+ * and up. The in-circle test is computed in long arithmetic for spans below
+ * 2^14, which covers any layout this generator produces; above that it is
+ * computed in doubles and redone with BigInteger when the result is within
+ * the rounding error of zero.
+ * <p>
+ * The distance order is rounded, so on near-collinear sets a point can come
+ * after a point that puts it inside the hull. Such a point is inserted into
+ * the triangle, or split edge, it falls on.
+ * <p>
+ * Duplicate points are triangulated once and joined to their first
+ * occurrence by a zero-length edge. If every point is collinear there are no
+ * triangles and the points are chained in order along the line. Either way
+ * the edges connect every point.
+ * <p>
+ * Scratch arrays are reused between calls. Not thread safe.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class DelaunayTriangulator {
+
+  private static final int EXACT_SPAN = 1 << 14;
+  private static final long WIDE_SPAN = 1L << 31;
+
+  /**
+   * Relative error bound of the in-circle determinant computed in doubles,
+   * from Shewchuk's adaptive predicates.
+   */
+  private static final double IN_CIRCLE_ERROR = (10 + 96 * 0x1p-53) * 0x1p-53;
+
+  private int[] px = new int[0];
+  private int[] py = new int[0];
+  private boolean exact;
+  private boolean wide;
+
+  private int[] triangles = new int[0];
+  private int[] halfedges = new int[0];
+  private int trianglesLen;
+
+  private int[] hullPrev = new int[0];
+  private int[] hullNext = new int[0];
+  private int[] hullTri = new int[0];
+  private int[] hullHash = new int[0];
+  private int hashSize;
+  private int hullStart;
+  private double cx;
+  private double cy;
+
+  private int[] ids = new int[0];
+  private double[] dists = new double[0];
+  private int[] edgeStack = new int[64];
+
+  private int[] edges = new int[0];
+  private int edgeCount;
+
+  /**
+   * Triangulates the first n points.
+   * 
+   * @return the number of edges
+   */
+  public int triangulate(int[] xs, int[] ys, int n) {
+    trianglesLen = 0;
+    edgeCount = 0;
+    if (edges.length < Math.max(n * 6, 2)) {
+      edges = new int[Math.max(n * 6, 2)];
+    }
+
+    /*
+     * Collapse duplicate points onto their first occurrence
+     */
+    int[] unique = new int[n];
+    int[] duplicateOf = new int[n];
+    int m = 0;
+    long[] sorted = new long[n];
+    for (int i = 0; i < n; i++) {
+      sorted[i] = key(xs[i], ys[i]);
+    }
+    Arrays.sort(sorted);
+    int distinct = 0;
+    for (int i = 0; i < n; i++) {
+      if (i == 0 || sorted[i] != sorted[i - 1]) {
+        sorted[distinct++] = sorted[i];
+      }
+    }
+    int[] first = new int[distinct];
+    Arrays.fill(first, -1);
+    for (int i = 0; i < n; i++) {
+      int k = Arrays.binarySearch(sorted, 0, distinct, key(xs[i], ys[i]));
+      if (first[k] == -1) {
+        first[k] = i;
+        unique[m++] = i;
+        duplicateOf[i] = -1;
+      } else {
+        duplicateOf[i] = first[k];
+      }
+    }
+
+    if (px.length < m) {
+      px = new int[m];
+      py = new int[m];
+    }
+    int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+    int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+    for (int k = 0; k < m; k++) {
+      px[k] = xs[unique[k]];
+      py[k] = ys[unique[k]];
+      minX = Math.min(minX, px[k]);
+      minY = Math.min(minY, py[k]);
+      maxX = Math.max(maxX, px[k]);
+      maxY = Math.max(maxY, py[k]);
+    }
+    exact = (long) maxX - minX < EXACT_SPAN && (long) maxY - minY < EXACT_SPAN;
+    wide = (long) maxX - minX >= WIDE_SPAN || (long) maxY - minY >= WIDE_SPAN;
+
+    if (m == 2) {
+      addEdge(unique[0], unique[1]);
+    } else if (m > 2 && !sweep(m, minX, minY, maxX, maxY)) {
+      chainCollinear(m, unique);
+    } else if (m > 2) {
+      for (int e = 0; e < trianglesLen; e++) {
+        if (halfedges[e] < e) {
+          addEdge(unique[triangles[e]], unique[triangles[e % 3 == 2 ? e - 2 : e + 1]]);
+        }
+      }
+      for (int t = 0; t < trianglesLen; t++) {
+        triangles[t] = unique[triangles[t]];
+      }
+    }
+
+    for (int i = 0; i < n; i++) {
+      if (duplicateOf[i] >= 0) {
+        addEdge(duplicateOf[i], i);
+      }
+    }
+    return edgeCount;
+  }
+
+  /**
+   * @return vertex index pairs, two ints per edge
+   */
+  public int[] getEdges() {
+    return edges;
+  }
+
+  public int getEdgeCount() {
+    return edgeCount;
+  }
+
+  /**
+   * @return vertex indices, three per triangle in clockwise order (y up)
+   */
+  public int[] getTriangles() {
+    return triangles;
+  }
+
+  /**
+   * @return the number of triangles from the last call, counting duplicate
+   *         points once
+   */
+  public int getTriangleCount() {
+    return trianglesLen / 3;
+  }
+
+  private static long key(int x, int y) {
+    return ((long) x << 32) | (y & 0xFFFFFFFFL);
+  }
+
+  private void addEdge(int a, int b) {
+    edges[edgeCount * 2] = a;
+    edges[edgeCount * 2 + 1] = b;
+    edgeCount++;
+  }
+
+  /**
+   * Orders collinear points along their line and links neighbours.
+   */
+  private void chainCollinear(int m, int[] unique) {
+    long[] keys = new long[m];
+    int dx = px[m - 1] - px[0];
+    for (int k = 0; k < m; k++) {
+      // on a line the x order is the line order unless the line is vertical
+      long along = dx != 0 ? px[k] : py[k];
+      keys[k] = (along << 32) | k;
+    }
+    Arrays.sort(keys);
+    for (int k = 1; k < m; k++) {
+      addEdge(unique[(int) keys[k - 1]], unique[(int) keys[k]]);
+    }
+  }
+
+  /**
+   * @return false if every point is collinear
+   */
+  private boolean sweep(int n, int minX, int minY, int maxX, int maxY) {
+    int maxTriangles = Math.max(2 * n - 5, 0);
+    if (triangles.length < maxTriangles * 3) {
+      triangles = new int[maxTriangles * 3];
+      halfedges = new int[maxTriangles * 3];
+    }
+    if (hullPrev.length < n) {
+      hullPrev = new int[n];
+      hullNext = new int[n];
+      hullTri = new int[n];
+      ids = new int[n];
+      dists = new double[n];
+    }
+    hashSize = (int) Math.ceil(Math.sqrt(n));
+    if (hullHash.length < hashSize) {
+      hullHash = new int[hashSize];
+    }
+
+    double mx = (minX + (double) maxX) / 2;
+    double my = (minY + (double) maxY) / 2;
+
+    /*
+     * Seed triangle: the point closest to the middle, its nearest neighbour
+     * and the point making the smallest circumcircle with them
+     */
+    int i0 = 0, i1 = 0, i2 = 0;
+    double minDist = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < n; i++) {
+      ids[i] = i;
+      double d = dist(mx, my, px[i], py[i]);
+      if (d < minDist) {
+        i0 = i;
+        minDist = d;
+      }
+    }
+    minDist = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < n; i++) {
+      if (i == i0) {
+        continue;
+      }
+      double d = dist(px[i0], py[i0], px[i], py[i]);
+      if (d < minDist && d > 0) {
+        i1 = i;
+        minDist = d;
+      }
+    }
+    double minRadius = Double.POSITIVE_INFINITY;
+    for (int i = 0; i < n; i++) {
+      if (i == i0 || i == i1) {
+        continue;
+      }
+      if (orient(i0, i1, i) == 0) {
+        continue;
+      }
+      double r = circumradius(px[i0], py[i0], px[i1], py[i1], px[i], py[i]);
+      if (r < minRadius) {
+        i2 = i;
+        minRadius = r;
+      }
+    }
+    if (minRadius == Double.POSITIVE_INFINITY) {
+      return false;
+    }
+    // the hull is wound clockwise (y up)
+    if (orient(i0, i1, i2) > 0) {
+      int t = i1;
+      i1 = i2;
+      i2 = t;
+    }
+
+    circumcenter(px[i0], py[i0], px[i1], py[i1], px[i2], py[i2]);
+    for (int i = 0; i < n; i++) {
+      dists[i] = dist(cx, cy, px[i], py[i]);
+    }
+    quicksort(0, n - 1);
+
+    hullStart = i0;
+    hullNext[i0] = hullPrev[i2] = i1;
+    hullNext[i1] = hullPrev[i0] = i2;
+    hullNext[i2] = hullPrev[i1] = i0;
+    hullTri[i0] = 0;
+    hullTri[i1] = 1;
+    hullTri[i2] = 2;
+    Arrays.fill(hullHash, 0, hashSize, -1);
+    hullHash[hashKey(px[i0], py[i0])] = i0;
+    hullHash[hashKey(px[i1], py[i1])] = i1;
+    hullHash[hashKey(px[i2], py[i2])] = i2;
+
+    addTriangle(i0, i1, i2, -1, -1, -1);
+
+    for (int k = 0; k < n; k++) {
+      int i = ids[k];
+      if (i == i0 || i == i1 || i == i2) {
+        continue;
+      }
+
+      // find an edge of the hull visible from the point
+      int start = 0;
+      for (int j = 0, key = hashKey(px[i], py[i]); j < hashSize; j++) {
+        start = hullHash[(key + j) % hashSize];
+        if (start != -1 && start != hullNext[start]) {
+          break;
+        }
+      }
+      start = hullPrev[start];
+      int e = start, q;
+      while (!visible(i, e, q = hullNext[e])) {
+        e = q;
+        if (e == start) {
+          e = -1;
+          break;
+        }
+      }
+      if (e == -1) {
+        // inside or on the hull, left there by rounding in the distance order
+        insertInside(i);
+        continue;
+      }
+
+      // add the first triangle from the point
+      int t = addTriangle(e, i, hullNext[e], -1, -1, hullTri[e]);
+      hullTri[i] = legalize(t + 2);
+      hullTri[e] = t;
+
+      // walk forward through the hull
+      int nx = hullNext[e];
+      while (visible(i, nx, q = hullNext[nx])) {
+        t = addTriangle(nx, i, q, hullTri[i], -1, hullTri[nx]);
+        hullTri[i] = legalize(t + 2);
+        hullNext[nx] = nx; // removed from the hull
+        nx = q;
+      }
+
+      // walk backward from the other side
+      if (e == start) {
+        while (visible(i, q = hullPrev[e], e)) {
+          t = addTriangle(q, i, e, -1, hullTri[e], hullTri[q]);
+          legalize(t + 2);
+          hullTri[q] = t;
+          hullNext[e] = e; // removed from the hull
+          e = q;
+        }
+      }
+
+      hullStart = hullPrev[i] = e;
+      hullNext[e] = hullPrev[nx] = i;
+      hullNext[i] = nx;
+
+      hullHash[hashKey(px[i], py[i])] = i;
+      hullHash[hashKey(px[e], py[e])] = e;
+    }
+    return true;
+  }
+
+  /**
+   * Flips edges until the triangles around the given half-edge are locally
+   * Delaunay.
+   */
+  private int legalize(int a) {
+    int i = 0;
+    int ar;
+    while (true) {
+      int b = halfedges[a];
+      int a0 = a - a % 3;
+      ar = a0 + (a + 2) % 3;
+
+      if (b == -1) {
+        // hull edge
+        if (i == 0) {
+          break;
+        }
+        a = edgeStack[--i];
+        continue;
+      }
+
+      int b0 = b - b % 3;
+      int al = a0 + (a + 1) % 3;
+      int bl = b0 + (b + 2) % 3;
+
+      int p0 = triangles[ar];
+      int pr = triangles[a];
+      int pl = triangles[al];
+      int p1 = triangles[bl];
+
+      if (inCircle(p0, pr, pl, p1)) {
+        triangles[a] = p1;
+        triangles[b] = p0;
+
+        int hbl = halfedges[bl];
+
+        // edge swapped on the other side of the hull; fix the reference
+        if (hbl == -1) {
+          int e = hullStart;
+          do {
+            if (hullTri[e] == bl) {
+              hullTri[e] = a;
+              break;
+            }
+            e = hullPrev[e];
+          } while (e != hullStart);
+        }
+        link(a, hbl);
+        link(b, halfedges[ar]);
+        link(ar, bl);
+
+        if (i == edgeStack.length) {
+          edgeStack = Arrays.copyOf(edgeStack, i << 1);
+        }
+        edgeStack[i++] = b0 + (b + 1) % 3;
+      } else {
+        if (i == 0) {
+          break;
+        }
+        a = edgeStack[--i];
+      }
+    }
+    return ar;
+  }
+
+  private void link(int a, int b) {
+    halfedges[a] = b;
+    if (b != -1) {
+      halfedges[b] = a;
+    }
+  }
+
+  private int addTriangle(int i0, int i1, int i2, int a, int b, int c) {
+    int t = trianglesLen;
+    setTriangle(t, i0, i1, i2, a, b, c);
+    trianglesLen += 3;
+    return t;
+  }
+
+  private void setTriangle(int t, int i0, int i1, int i2, int a, int b, int c) {
+    triangles[t] = i0;
+    triangles[t + 1] = i1;
+    triangles[t + 2] = i2;
+    link(t, a);
+    link(t + 1, b);
+    link(t + 2, c);
+  }
+
+  /**
+   * Adds a point that no hull edge faces by splitting the triangle it lies in,
+   * or the triangles either side of the edge it lies on, and legalizing the
+   * edges opposite the point.
+   */
+  private void insertInside(int p) {
+    for (int t = 0; t < trianglesLen; t += 3) {
+      int a = orient(triangles[t], triangles[t + 1], p);
+      int b = orient(triangles[t + 1], triangles[t + 2], p);
+      int c = orient(triangles[t + 2], triangles[t], p);
+      if (a > 0 || b > 0 || c > 0) {
+        continue;
+      }
+      if (a == 0) {
+        splitEdge(t, p);
+      } else if (b == 0) {
+        splitEdge(t + 1, p);
+      } else if (c == 0) {
+        splitEdge(t + 2, p);
+      } else {
+        splitTriangle(t, p);
+      }
+      return;
+    }
+    throw new IllegalStateException("Point " + p + " is neither inside the hull nor facing a hull edge");
+  }
+
+  /**
+   * Splits triangle t into three around point p.
+   */
+  private void splitTriangle(int t, int p) {
+    int a = triangles[t];
+    int b = triangles[t + 1];
+    int c = triangles[t + 2];
+    int hb = halfedges[t + 1];
+    int hc = halfedges[t + 2];
+    setTriangle(t, a, b, p, halfedges[t], -1, -1);
+    int t1 = addTriangle(b, c, p, hb, -1, t + 1);
+    int t2 = addTriangle(c, a, p, hc, t + 2, t1 + 1);
+    legalizeAround(t, t1, t2, -1);
+  }
+
+  /**
+   * Splits half-edge e at point p, along with the triangle on its other side
+   * if there is one; otherwise p joins the hull between the edge's ends.
+   */
+  private void splitEdge(int e, int p) {
+    int t = e - e % 3;
+    int eb = t + (e + 1) % 3;
+    int ec = t + (e + 2) % 3;
+    int a = triangles[e];
+    int b = triangles[eb];
+    int c = triangles[ec];
+    int hb = halfedges[eb];
+    int hc = halfedges[ec];
+    int o = halfedges[e];
+
+    setTriangle(t, p, b, c, -1, hb, -1);
+    int t1 = addTriangle(a, p, c, -1, t + 2, hc);
+    if (o == -1) {
+      hullNext[a] = hullPrev[b] = p;
+      hullPrev[p] = a;
+      hullNext[p] = b;
+      hullTri[a] = t1;
+      hullTri[p] = t;
+      hullHash[hashKey(px[p], py[p])] = p;
+      legalizeAround(t + 1, t1 + 2, -1, -1);
+      return;
+    }
+
+    int u = o - o % 3;
+    int d = triangles[u + (o + 2) % 3];
+    int hd = halfedges[u + (o + 1) % 3];
+    int he = halfedges[u + (o + 2) % 3];
+    setTriangle(u, p, a, d, t1, hd, -1);
+    int t3 = addTriangle(b, p, d, t, u + 2, he);
+    legalizeAround(t + 1, t1 + 2, u + 1, t3 + 2);
+  }
+
+  /**
+   * Points hull references at the given half-edges where they lie on the hull,
+   * then legalizes each of them; -1 entries are skipped.
+   */
+  private void legalizeAround(int a, int b, int c, int d) {
+    int[] e = { a, b, c, d };
+    for (int k = 0; k < e.length; k++) {
+      if (e[k] != -1 && halfedges[e[k]] == -1) {
+        hullTri[triangles[e[k]]] = e[k];
+      }
+    }
+    for (int k = 0; k < e.length; k++) {
+      if (e[k] != -1) {
+        legalize(e[k]);
+      }
+    }
+  }
+
+  /**
+   * @return the sign of twice the signed area of (a, b, c), positive when
+   *         counter-clockwise (y up)
+   */
+  private int orient(int a, int b, int c) {
+    long bx = (long) px[b] - px[a], by = (long) py[b] - py[a];
+    long cx = (long) px[c] - px[a], cy = (long) py[c] - py[a];
+    if (!wide) {
+      // each product is below 2^62
+      return Long.signum(bx * cy - by * cx);
+    }
+    return big(bx).multiply(big(cy)).subtract(big(by).multiply(big(cx))).signum();
+  }
+
+  /**
+   * @return true if hull edge (a, b) is visible from point p
+   */
+  private boolean visible(int p, int a, int b) {
+    return orient(p, a, b) > 0;
+  }
+
+  /**
+   * @return true if p lies strictly inside the circumcircle of (a, b, c)
+   */
+  private boolean inCircle(int a, int b, int c, int p) {
+    if (exact) {
+      long dx = px[a] - px[p], dy = py[a] - py[p];
+      long ex = px[b] - px[p], ey = py[b] - py[p];
+      long fx = px[c] - px[p], fy = py[c] - py[p];
+      long ap = dx * dx + dy * dy;
+      long bp = ex * ex + ey * ey;
+      long cp = fx * fx + fy * fy;
+      return dx * (ey * cp - bp * fy) - dy * (ex * cp - bp * fx) + ap * (ex * fy - ey * fx) < 0;
+    }
+    // differences of ints are exact in doubles; only the products round
+    double dx = px[a] - (double) px[p], dy = py[a] - (double) py[p];
+    double ex = px[b] - (double) px[p], ey = py[b] - (double) py[p];
+    double fx = px[c] - (double) px[p], fy = py[c] - (double) py[p];
+    double ap = dx * dx + dy * dy;
+    double bp = ex * ex + ey * ey;
+    double cp = fx * fx + fy * fy;
+    double exfy = ex * fy, fxey = fx * ey;
+    double fxdy = fx * dy, dxfy = dx * fy;
+    double dxey = dx * ey, exdy = ex * dy;
+    double det = ap * (exfy - fxey) + bp * (fxdy - dxfy) + cp * (dxey - exdy);
+    double permanent = ap * (Math.abs(exfy) + Math.abs(fxey)) + bp * (Math.abs(fxdy) + Math.abs(dxfy)) + cp
+        * (Math.abs(dxey) + Math.abs(exdy));
+    double bound = IN_CIRCLE_ERROR * permanent;
+    if (det < -bound || det > bound) {
+      return det < 0;
+    }
+    BigInteger bdx = big(dx), bdy = big(dy);
+    BigInteger bex = big(ex), bey = big(ey);
+    BigInteger bfx = big(fx), bfy = big(fy);
+    BigInteger bap = bdx.multiply(bdx).add(bdy.multiply(bdy));
+    BigInteger bbp = bex.multiply(bex).add(bey.multiply(bey));
+    BigInteger bcp = bfx.multiply(bfx).add(bfy.multiply(bfy));
+    return bap.multiply(bex.multiply(bfy).subtract(bfx.multiply(bey)))
+        .add(bbp.multiply(bfx.multiply(bdy).subtract(bdx.multiply(bfy))))
+        .add(bcp.multiply(bdx.multiply(bey).subtract(bex.multiply(bdy)))).signum() < 0;
+  }
+
+  private static BigInteger big(long value) {
+    return BigInteger.valueOf(value);
+  }
+
+  private static BigInteger big(double value) {
+    return BigInteger.valueOf((long) value);
+  }
+
+  private int hashKey(int x, int y) {
+    double dx = x - cx;
+    double dy = y - cy;
+    // monotonic in angle, in [0..1]
+    double p = dx / (Math.abs(dx) + Math.abs(dy));
+    double angle = (dy > 0 ? 3 - p : 1 + p) / 4;
+    return (int) Math.floor(angle * hashSize) % hashSize;
+  }
+
+  private static double dist(double ax, double ay, double bx, double by) {
+    double dx = ax - bx;
+    double dy = ay - by;
+    return dx * dx + dy * dy;
+  }
+
+  private static double circumradius(double ax, double ay, double bx, double by, double cx, double cy) {
+    double dx = bx - ax;
+    double dy = by - ay;
+    double ex = cx - ax;
+    double ey = cy - ay;
+    double bl = dx * dx + dy * dy;
+    double cl = ex * ex + ey * ey;
+    double d = 0.5 / (dx * ey - dy * ex);
+    double x = (ey * bl - dy * cl) * d;
+    double y = (dx * cl - ex * bl) * d;
+    return x * x + y * y;
+  }
+
+  private void circumcenter(double ax, double ay, double bx, double by, double cx, double cy) {
+    double dx = bx - ax;
+    double dy = by - ay;
+    double ex = cx - ax;
+    double ey = cy - ay;
+    double bl = dx * dx + dy * dy;
+    double cl = ex * ex + ey * ey;
+    double d = 0.5 / (dx * ey - dy * ex);
+    this.cx = ax + (ey * bl - dy * cl) * d;
+    this.cy = ay + (dx * cl - ex * bl) * d;
+  }
+
+  /**
+   * Sorts ids by distance; insertion sort for short ranges.
+   */
+  private void quicksort(int left, int right) {
+    while (right - left > 20) {
+      int median = (left + right) >>> 1;
+      int i = left + 1;
+      int j = right;
+      swap(median, i);
+      if (dists[ids[left]] > dists[ids[right]]) {
+        swap(left, right);
+      }
+      if (dists[ids[i]] > dists[ids[right]]) {
+        swap(i, right);
+      }
+      if (dists[ids[left]] > dists[ids[i]]) {
+        swap(left, i);
+      }
+      int temp = ids[i];
+      double tempDist = dists[temp];
+      while (true) {
+        do {
+          i++;
+        } while (dists[ids[i]] < tempDist);
+        do {
+          j--;
+        } while (dists[ids[j]] > tempDist);
+        if (j < i) {
+          break;
+        }
+        swap(i, j);
+      }
+      ids[left + 1] = ids[j];
+      ids[j] = temp;
+      // recurse into the smaller side to bound the stack
+      if (right - i + 1 >= j - left) {
+        quicksort(left, j - 1);
+        left = i;
+      } else {
+        quicksort(i, right);
+        right = j - 1;
+      }
+    }
+    for (int i = left + 1; i <= right; i++) {
+      int temp = ids[i];
+      double tempDist = dists[temp];
+      int j = i - 1;
+      while (j >= left && dists[ids[j]] > tempDist) {
+        ids[j + 1] = ids[j--];
+      }
+      ids[j + 1] = temp;
+    }
+  }
+
+  private void swap(int i, int j) {
+    int t = ids[i];
+    ids[i] = ids[j];
+    ids[j] = t;
+  }
+
+}
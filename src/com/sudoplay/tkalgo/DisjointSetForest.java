@@ -21,12 +21,8 @@ public class DisjointSetForest<T> {
 
     @Override
     public int hashCode() {
-      final int prime = 31;
-      int result = 1;
-      result = prime * result + ((parent == null) ? 0 : parent.hashCode());
-      result = prime * result + rank;
-      result = prime * result + ((ref == null) ? 0 : ref.hashCode());
-      return result;
+      // only ref takes part in equals; parent and rank change with unions
+      return (ref == null) ? 0 : ref.hashCode();
     }
 
     @Override
@@ -63,8 +59,11 @@ public class DisjointSetForest<T> {
   }
 
   public Node findSet(Node node) {
-    if (node.parent != null) {
-      return findSet(node.parent);
+    while (node.parent != null) {
+      if (node.parent.parent != null) {
+        node.parent = node.parent.parent;
+      }
+      node = node.parent;
     }
     return node;
   }
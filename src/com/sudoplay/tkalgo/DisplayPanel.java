@@ -1,81 +1,145 @@
 package com.sudoplay.tkalgo;
 
+import java.awt.AlphaComposite;
 import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.awt.geom.Path2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import javax.swing.JPanel;
 
-import com.sudoplay.math.Vector2i;
-import com.sudoplay.math.delaunay.DT_Triangle;
-import com.sudoplay.math.delaunay.DelaunayTriangulation;
-import com.sudoplay.tkalgo.EdgeList.Edge;
 import com.sudoplay.tkalgo.Main.State;
 
+/**
+ * Draws the latest {@link DisplaySnapshot} of a {@link Main} run. Snapshots
+ * are set and painted on the event dispatch thread.
+ * <p>
+ * Once the cells are separated, the filler cells, rooms, triangulation and
+ * min-span tree only change in a few stages, so each is drawn into a cached
+ * image that is redrawn when the size of its data changes. The layers of the
+ * current state are flattened into one opaque scene image, which is rebuilt
+ * when any of them changes and otherwise copied as is. Cells are drawn with
+ * one fill per color instead of one line per grid row and column.
+ * 
+ * @author Jason Taylor
+ * 
+ */
 @SuppressWarnings("serial")
 public class DisplayPanel extends JPanel {
 
-  private int displayGrid;
-
-  public void setDisplayGrid(int size) {
-    this.displayGrid = size;
-  }
-
-  private State state = State.NONE;
-
-  public void setState(State state) {
-    this.state = state;
-  }
-
-  private ArrayList<Cell> cells;
-
-  public void setCells(ArrayList<Cell> cells) {
-    this.cells = cells;
-  }
+  private static final Color GRID = new Color(0x333366);
+  private static final Color BORDER = new Color(0x666666);
+  private static final BasicStroke STROKE = new BasicStroke(1);
+  private static final BasicStroke CONNECTION_STROKE = new BasicStroke(3);
+  private static final BasicStroke MIN_TREE_STROKE = new BasicStroke(5);
+
+  /**
+   * A cached image of one layer, keyed on values that change when the data
+   * drawn into it does. An opaque layer is cleared to black, others to
+   * transparent.
+   */
+  private static final class Layer {
+
+    private final boolean opaque;
+    private BufferedImage image;
+    private long[] key;
+
+    Layer(boolean opaque) {
+      this.opaque = opaque;
+    }
 
-  private ArrayList<Cell> fillerCells;
+    boolean isCurrent(int width, int height, long... key) {
+      return image != null && image.getWidth() == width && image.getHeight() == height && Arrays.equals(this.key, key);
+    }
 
-  public void setFillerCells(ArrayList<Cell> cells) {
-    this.fillerCells = cells;
-  }
+    /**
+     * @return a graphics for the cleared image, to be disposed by the caller
+     */
+    Graphics2D begin(int width, int height, long... key) {
+      if (image == null || image.getWidth() != width || image.getHeight() != height) {
+        image = new BufferedImage(width, height, opaque ? BufferedImage.TYPE_INT_RGB
+            : BufferedImage.TYPE_INT_ARGB_PRE);
+      }
+      this.key = key;
+      Graphics2D g2 = image.createGraphics();
+      if (opaque) {
+        g2.setPaint(Color.BLACK);
+        g2.fillRect(0, 0, width, height);
+      } else {
+        g2.setComposite(AlphaComposite.Clear);
+        g2.fillRect(0, 0, width, height);
+        g2.setComposite(AlphaComposite.SrcOver);
+      }
+      return g2;
+    }
 
-  private CellBounds bounds;
+    void invalidate() {
+      key = null;
+    }
 
-  public void setCellBounds(CellBounds bounds) {
-    this.bounds = bounds;
   }
 
-  private DelaunayTriangulation dt;
-
-  public void setDT(DelaunayTriangulation dt) {
-    this.dt = dt;
-  }
+  private final Layer scene = new Layer(true);
+  private final Layer fillerLayer = new Layer(true);
+  private final Layer roomLayer = new Layer(false);
+  private final Layer dtLayer = new Layer(false);
+  private final Layer minTreeLayer = new Layer(false);
 
-  private ArrayList<Edge> minTree;
+  private int displayGrid;
 
-  public void setMinTree(ArrayList<Edge> minTree) {
-    this.minTree = minTree;
+  public void setDisplayGrid(int size) {
+    this.displayGrid = size;
+    invalidateLayers();
   }
 
-  private ArrayList<RoomConnection> connections;
-
-  public void setConnections(ArrayList<RoomConnection> connections) {
-    this.connections = connections;
+  private DisplaySnapshot snapshot;
+  private State state = State.NONE;
+  private long run = -1;
+  private List<Cell> cells = Collections.emptyList();
+  private List<Cell> fillerCells = Collections.emptyList();
+  private List<Cell> masterCells = Collections.emptyList();
+  private CellBounds bounds;
+  private int[] dt = new int[0];
+  private int[] minTree = new int[0];
+  private int[] connections = new int[0];
+  private List<String> outText = Collections.emptyList();
+
+  /**
+   * The cached layers are keyed on the run of the snapshot, so they are never
+   * reused for a later run, even if intermediate snapshots were skipped.
+   */
+  public void setSnapshot(DisplaySnapshot snapshot) {
+    this.snapshot = snapshot;
+    state = snapshot.getState();
+    run = snapshot.getRun();
+    cells = snapshot.getCells();
+    fillerCells = snapshot.getFillerCells();
+    masterCells = snapshot.getMasterCells();
+    bounds = snapshot.getCellBounds();
+    dt = snapshot.getDTSegments();
+    minTree = snapshot.getMinTreeSegments();
+    connections = snapshot.getConnectionSegments();
+    outText = snapshot.getOutText();
   }
 
-  private ArrayList<Cell> masterCells;
-
-  public void setMasterCells(ArrayList<Cell> cells) {
-    this.masterCells = cells;
+  /**
+   * @return the snapshot last set, or null
+   */
+  public DisplaySnapshot getSnapshot() {
+    return snapshot;
   }
 
-  private ArrayList<String> outText;
-
-  public void setOutText(ArrayList<String> outText) {
-    this.outText = outText;
+  public void invalidateLayers() {
+    scene.invalidate();
+    fillerLayer.invalidate();
+    roomLayer.invalidate();
+    dtLayer.invalidate();
+    minTreeLayer.invalidate();
   }
 
   @Override
@@ -84,77 +148,40 @@ public class DisplayPanel extends JPanel {
 
     Graphics2D g2 = (Graphics2D) g;
 
-    clear(g2);
-
     switch (state) {
     case NONE:
     case INIT:
+      clear(g2);
       break;
     case GENERATE:
     case SEPARATE:
+      clear(g2);
       drawCells(g2, Cell.TYPE_NONE, cells);
       drawCells(g2, Cell.TYPE_OVERLAP, cells);
       break;
     case FILL:
-      drawCells(g2, Cell.TYPE_FILL, fillerCells);
-      drawCells(g2, Cell.TYPE_NONE, cells);
-      drawCells(g2, Cell.TYPE_OVERLAP, cells);
-      drawBounds(g2, bounds);
-      break;
     case SELECT:
-      drawCells(g2, Cell.TYPE_FILL, fillerCells);
-      drawCells(g2, Cell.TYPE_NONE, cells);
-      drawCells(g2, Cell.TYPE_ROOM, cells);
-      drawCells(g2, Cell.TYPE_OVERLAP, cells);
-      drawBounds(g2, bounds);
-      break;
     case TRIANGULATE:
-      drawCells(g2, Cell.TYPE_FILL, fillerCells);
-      drawCells(g2, Cell.TYPE_NONE, cells);
-      drawCells(g2, Cell.TYPE_ROOM, cells);
-      drawCells(g2, Cell.TYPE_OVERLAP, cells);
-      drawBounds(g2, bounds);
-      drawDT(g2, dt);
-      break;
     case MINSPAN:
-      drawCells(g2, Cell.TYPE_FILL, fillerCells);
-      drawCells(g2, Cell.TYPE_NONE, cells);
-      drawCells(g2, Cell.TYPE_ROOM, cells);
-      drawCells(g2, Cell.TYPE_OVERLAP, cells);
-      drawBounds(g2, bounds);
-      drawDT(g2, dt);
-      drawMinTree(g2, minTree);
-      break;
     case LOOPS:
-      drawCells(g2, Cell.TYPE_FILL, fillerCells);
-      drawCells(g2, Cell.TYPE_NONE, cells);
-      drawCells(g2, Cell.TYPE_ROOM, cells);
-      drawCells(g2, Cell.TYPE_OVERLAP, cells);
-      drawBounds(g2, bounds);
-      drawMinTree(g2, minTree);
+      drawScene(g2);
       break;
     case CONNECTION:
-      drawCells(g2, Cell.TYPE_FILL, fillerCells);
-      drawCells(g2, Cell.TYPE_NONE, cells);
-      drawCells(g2, Cell.TYPE_ROOM, cells);
-      drawCells(g2, Cell.TYPE_OVERLAP, cells);
-      drawBounds(g2, bounds);
-      drawMinTree(g2, minTree);
-      drawConnections(g2, connections);
+      drawScene(g2);
+      drawSegments(g2, connections, Color.BLUE, CONNECTION_STROKE);
       break;
     case INTERSECTION:
-      drawCells(g2, Cell.TYPE_FILL, fillerCells);
-      drawCells(g2, Cell.TYPE_NONE, cells);
-      drawCells(g2, Cell.TYPE_ROOM, cells);
-      drawCells(g2, Cell.TYPE_OVERLAP, cells);
+      drawScene(g2);
       drawMasterCells(g2, masterCells, true);
       drawBounds(g2, bounds);
-      drawConnections(g2, connections);
+      drawSegments(g2, connections, Color.BLUE, CONNECTION_STROKE);
       break;
     case FINAL:
+      clear(g2);
       drawMasterCells(g2, masterCells, false);
       break;
     default:
+      clear(g2);
       break;
     }
 
@@ -162,27 +189,107 @@ public class DisplayPanel extends JPanel {
 
   }
 
-  private void drawConnections(Graphics2D g2, ArrayList<RoomConnection> connections) {
-    ArrayList<Vector2i> points;
-    g2.setPaint(Color.BLUE);
-    g2.setStroke(new BasicStroke(3));
-    for (RoomConnection con : connections) {
-      points = con.getPoints();
-      int x1, y1, x2, y2;
-      x1 = points.get(0).x * displayGrid;
-      y1 = points.get(0).y * displayGrid;
-      x2 = points.get(1).x * displayGrid;
-      y2 = points.get(1).y * displayGrid;
-      g2.drawLine(x1, y1, x2, y2);
-      if (points.size() == 3) {
-        x1 = points.get(1).x * displayGrid;
-        y1 = points.get(1).y * displayGrid;
-        x2 = points.get(2).x * displayGrid;
-        y2 = points.get(2).y * displayGrid;
-        g2.drawLine(x1, y1, x2, y2);
+  /**
+   * Draws everything of the current state that is not redrawn on every paint,
+   * from the cached scene if none of its layers changed. The cells are no
+   * longer moving in these states, so the non-room cells are keyed on their
+   * count.
+   */
+  private void drawScene(Graphics2D g2) {
+    int w = getWidth();
+    int h = getHeight();
+    long[] key = { run, state.ordinal(), fillerCells.size(), getRoomCount(), cells.size(), dt.length,
+        minTree.length, bounds == null ? 0 : System.identityHashCode(bounds) };
+    if (!scene.isCurrent(w, h, key)) {
+      Graphics2D sg = scene.begin(w, h, key);
+      drawFillerLayer(sg);
+      drawCells(sg, Cell.TYPE_NONE, cells);
+      if (state != State.FILL) {
+        drawRoomLayer(sg);
+      }
+      drawCells(sg, Cell.TYPE_OVERLAP, cells);
+      if (state != State.INTERSECTION) {
+        drawBounds(sg, bounds);
+      }
+      if (state == State.TRIANGULATE || state == State.MINSPAN) {
+        drawDTLayer(sg);
+      }
+      if (state == State.MINSPAN || state == State.LOOPS || state == State.CONNECTION) {
+        drawMinTreeLayer(sg);
+      }
+      sg.dispose();
+    }
+    g2.drawImage(scene.image, 0, 0, null);
+  }
+
+  private int getRoomCount() {
+    int count = 0;
+    for (int i = 0; i < cells.size(); i++) {
+      if (cells.get(i).type == Cell.TYPE_ROOM) {
+        count++;
       }
     }
-    g2.setStroke(new BasicStroke(1));
+    return count;
+  }
+
+  private void drawFillerLayer(Graphics2D g2) {
+    int w = getWidth();
+    int h = getHeight();
+    if (!fillerLayer.isCurrent(w, h, run, fillerCells.size())) {
+      Graphics2D lg = fillerLayer.begin(w, h, run, fillerCells.size());
+      drawCells(lg, Cell.TYPE_FILL, fillerCells);
+      lg.dispose();
+    }
+    g2.drawImage(fillerLayer.image, 0, 0, null);
+  }
+
+  private void drawRoomLayer(Graphics2D g2) {
+    int w = getWidth();
+    int h = getHeight();
+    int count = getRoomCount();
+    if (!roomLayer.isCurrent(w, h, run, count)) {
+      Graphics2D lg = roomLayer.begin(w, h, run, count);
+      drawCells(lg, Cell.TYPE_ROOM, cells);
+      lg.dispose();
+    }
+    g2.drawImage(roomLayer.image, 0, 0, null);
+  }
+
+  private void drawDTLayer(Graphics2D g2) {
+    int w = getWidth();
+    int h = getHeight();
+    if (!dtLayer.isCurrent(w, h, run, dt.length)) {
+      Graphics2D lg = dtLayer.begin(w, h, run, dt.length);
+      drawSegments(lg, dt, Color.YELLOW, STROKE);
+      lg.dispose();
+    }
+    g2.drawImage(dtLayer.image, 0, 0, null);
+  }
+
+  private void drawMinTreeLayer(Graphics2D g2) {
+    int w = getWidth();
+    int h = getHeight();
+    if (!minTreeLayer.isCurrent(w, h, run, minTree.length)) {
+      Graphics2D lg = minTreeLayer.begin(w, h, run, minTree.length);
+      drawSegments(lg, minTree, Color.GREEN, MIN_TREE_STROKE);
+      lg.dispose();
+    }
+    g2.drawImage(minTreeLayer.image, 0, 0, null);
+  }
+
+  /**
+   * Draws segments of x1, y1, x2, y2 in cell units as one shape.
+   */
+  private void drawSegments(Graphics2D g2, int[] segments, Color color, BasicStroke stroke) {
+    Path2D.Float path = new Path2D.Float();
+    for (int i = 0; i < segments.length; i += 4) {
+      path.moveTo(segments[i] * displayGrid, segments[i + 1] * displayGrid);
+      path.lineTo(segments[i + 2] * displayGrid, segments[i + 3] * displayGrid);
+    }
+    g2.setPaint(color);
+    g2.setStroke(stroke);
+    g2.draw(path);
+    g2.setStroke(STROKE);
   }
 
   private void drawBounds(Graphics2D g2, CellBounds bounds) {
@@ -195,7 +302,7 @@ public class DisplayPanel extends JPanel {
     g2.drawRect(x1, y1, x2, y2);
   }
 
-  private void drawText(Graphics2D g2, ArrayList<String> outputText) {
+  private void drawText(Graphics2D g2, List<String> outputText) {
     String line;
     g2.setPaint(Color.WHITE);
     g2.setFont(getFont().deriveFont(11f));
@@ -205,86 +312,43 @@ public class DisplayPanel extends JPanel {
     }
   }
 
-  private void drawMinTree(Graphics2D g2, ArrayList<Edge> minTree) {
-    if (minTree != null) {
-      int x1, y1, x2, y2;
-      g2.setPaint(Color.GREEN);
-      g2.setStroke(new BasicStroke(5));
-      for (EdgeList.Edge e : minTree) {
-        x1 = (int) e.getP1().x() * displayGrid;
-        y1 = (int) e.getP1().y() * displayGrid;
-        x2 = (int) e.getP2().x() * displayGrid;
-        y2 = (int) e.getP2().y() * displayGrid;
-        g2.drawLine(x1, y1, x2, y2);
-      }
-      g2.setStroke(new BasicStroke(1));
-    }
-  }
-
-  private void drawDT(Graphics2D g2, DelaunayTriangulation dt) {
-    if (dt != null && dt.size() >= 4) {
-      int x1, y1, x2, y2;
-      g2.setPaint(Color.YELLOW);
-      Iterator<DT_Triangle> it = dt.trianglesIterator();
-      while (it.hasNext()) {
-        DT_Triangle tri = it.next();
-        x1 = (int) tri.p1().x() * displayGrid;
-        y1 = (int) tri.p1().y() * displayGrid;
-        x2 = (int) tri.p2().x() * displayGrid;
-        y2 = (int) tri.p2().y() * displayGrid;
-        g2.drawLine(x1, y1, x2, y2);
-        if (!tri.isHalfplane()) {
-          x1 = (int) tri.p2().x() * displayGrid;
-          y1 = (int) tri.p2().y() * displayGrid;
-          x2 = (int) tri.p3().x() * displayGrid;
-          y2 = (int) tri.p3().y() * displayGrid;
-          g2.drawLine(x1, y1, x2, y2);
-          x1 = (int) tri.p3().x() * displayGrid;
-          y1 = (int) tri.p3().y() * displayGrid;
-          x2 = (int) tri.p1().x() * displayGrid;
-          y2 = (int) tri.p1().y() * displayGrid;
-          g2.drawLine(x1, y1, x2, y2);
-        }
-      }
-    }
-  }
-
-  private void drawCells(Graphics2D g2, int type, ArrayList<Cell> cells) {
-    for (Cell cell : cells) {
+  /**
+   * Draws the grid lines and borders of every cell of a type with one fill
+   * each. Lines are added as one pixel wide rectangles, covering the same
+   * pixels as the drawLine and drawRect calls they replace.
+   */
+  private void drawCells(Graphics2D g2, int type, List<Cell> cells) {
+    Path2D.Float grid = new Path2D.Float();
+    Path2D.Float border = new Path2D.Float();
+    Cell cell;
+    for (int i = 0; i < cells.size(); i++) {
+      cell = cells.get(i);
       if (cell.type == type) {
-        drawCell(g2, cell);
+        addCell(cell, grid, border);
       }
     }
+    g2.setPaint(type == Cell.TYPE_ROOM ? Color.RED : GRID);
+    g2.fill(grid);
+    if (type == Cell.TYPE_OVERLAP) {
+      g2.setPaint(Color.GREEN);
+    } else if (type == Cell.TYPE_FILL) {
+      g2.setPaint(Color.DARK_GRAY);
+    } else if (type == Cell.TYPE_ROOM) {
+      g2.setPaint(Color.WHITE);
+    } else {
+      g2.setPaint(BORDER);
+    }
+    g2.fill(border);
   }
 
-  private void drawMasterCells(Graphics2D g2, ArrayList<Cell> cells, boolean highlight) {
+  private void drawMasterCells(Graphics2D g2, List<Cell> cells, boolean highlight) {
     if (highlight) {
-      g2.setPaint(Color.GREEN);
-      for (Cell cell : cells) {
-        int xm, ym, x1, y1, x2, y2;
-
-        // vertical
-        for (int i = 1; i < cell.getWidth(); i++) {
-          xm = (i + cell.getLeft()) * displayGrid;
-          y1 = cell.getTop() * displayGrid;
-          y2 = cell.getBottom() * displayGrid;
-          g2.drawLine(xm, y1, xm, y2);
-        }
-
-        // horizontal
-        for (int i = 1; i < cell.getHeight(); i++) {
-          ym = (i + cell.getBottom()) * displayGrid;
-          x1 = cell.getLeft() * displayGrid;
-          x2 = cell.getRight() * displayGrid;
-          g2.drawLine(x1, ym, x2, ym);
-        }
-
-        x1 = cell.getLeft() * displayGrid;
-        y1 = cell.getBottom() * displayGrid;
-        x2 = cell.getWidth() * displayGrid;
-        y2 = cell.getHeight() * displayGrid;
-        g2.drawRect(x1, y1, x2, y2);
+      Path2D.Float path = new Path2D.Float();
+      for (int i = 0; i < cells.size(); i++) {
+        addCell(cells.get(i), path, path);
       }
+      g2.setPaint(Color.GREEN);
+      g2.fill(path);
     } else {
       drawCells(g2, Cell.TYPE_FILL, cells);
       drawCells(g2, Cell.TYPE_NONE, cells);
@@ -292,52 +356,42 @@ public class DisplayPanel extends JPanel {
     }
   }
 
-  private void clear(Graphics2D g2) {
-    g2.setPaint(Color.BLACK);
-    g2.fillRect(0, 0, getWidth(), getHeight());
-  }
-
-  private void drawCell(Graphics2D g2, Cell cell) {
-
-    int xm, ym, x1, y1, x2, y2;
-
-    if (cell.type == Cell.TYPE_ROOM) {
-      g2.setPaint(Color.RED);
-    } else {
-      g2.setPaint(Color.decode("#333366"));
-    }
+  private void addCell(Cell cell, Path2D.Float grid, Path2D.Float border) {
+    int x1 = cell.getLeft() * displayGrid;
+    int y1 = cell.getBottom() * displayGrid;
+    int x2 = cell.getRight() * displayGrid;
+    int y2 = cell.getTop() * displayGrid;
 
     // vertical
     for (int i = 1; i < cell.getWidth(); i++) {
-      xm = (i + cell.getLeft()) * displayGrid;
-      y1 = cell.getTop() * displayGrid;
-      y2 = cell.getBottom() * displayGrid;
-      g2.drawLine(xm, y1, xm, y2);
+      addRect(grid, (i + cell.getLeft()) * displayGrid, y1, 1, y2 - y1 + 1);
     }
 
     // horizontal
     for (int i = 1; i < cell.getHeight(); i++) {
-      ym = (i + cell.getBottom()) * displayGrid;
-      x1 = cell.getLeft() * displayGrid;
-      x2 = cell.getRight() * displayGrid;
-      g2.drawLine(x1, ym, x2, ym);
+      addRect(grid, x1, (i + cell.getBottom()) * displayGrid, x2 - x1 + 1, 1);
     }
 
-    if (cell.type == Cell.TYPE_OVERLAP) {
-      g2.setPaint(Color.GREEN);
-    } else if (cell.type == Cell.TYPE_FILL) {
-      g2.setPaint(Color.DARK_GRAY);
-    } else if (cell.type == Cell.TYPE_ROOM) {
-      g2.setPaint(Color.WHITE);
-    } else {
-      g2.setPaint(Color.decode("#666666"));
-    }
+    // drawRect covers width + 1 by height + 1 pixels
+    int w = cell.getWidth() * displayGrid;
+    int h = cell.getHeight() * displayGrid;
+    addRect(border, x1, y1, w + 1, 1);
+    addRect(border, x1, y1 + h, w + 1, 1);
+    addRect(border, x1, y1 + 1, 1, h - 1);
+    addRect(border, x1 + w, y1 + 1, 1, h - 1);
+  }
 
-    x1 = cell.getLeft() * displayGrid;
-    y1 = cell.getBottom() * displayGrid;
-    x2 = cell.getWidth() * displayGrid;
-    y2 = cell.getHeight() * displayGrid;
-    g2.drawRect(x1, y1, x2, y2);
+  private static void addRect(Path2D.Float path, int x, int y, int w, int h) {
+    path.moveTo(x, y);
+    path.lineTo(x + w, y);
+    path.lineTo(x + w, y + h);
+    path.lineTo(x, y + h);
+    path.closePath();
+  }
+
+  private void clear(Graphics2D g2) {
+    g2.setPaint(Color.BLACK);
+    g2.fillRect(0, 0, getWidth(), getHeight());
   }
 
 }
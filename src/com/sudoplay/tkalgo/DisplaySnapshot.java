@@ -0,0 +1,184 @@
+package com.sudoplay.tkalgo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import com.sudoplay.math.Vector2i;
+import com.sudoplay.math.delaunay.DT_Triangle;
+import com.sudoplay.math.delaunay.DelaunayTriangulation;
+import com.sudoplay.tkalgo.Main.State;
+
+/**
+ * An immutable copy of what a {@link DisplayPanel} draws for one state of a
+ * {@link Main} run, so the panel can draw it on its own thread while the run
+ * goes on.
+ * <p>
+ * Cells are copied; lines are stored as flat arrays of x1, y1, x2, y2 per
+ * segment, in cell units.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class DisplaySnapshot {
+
+  private final long run;
+  private final State state;
+  private final List<Cell> cells;
+  private final List<Cell> fillerCells;
+  private final List<Cell> masterCells;
+  private final CellBounds bounds;
+  private final int[] dtSegments;
+  private final int[] minTreeSegments;
+  private final int[] connectionSegments;
+  private final List<String> outText;
+
+  /**
+   * @param run
+   *          identifies the generation run; cached layers are never shared
+   *          between snapshots of different runs
+   * @param dt
+   *          may be null
+   */
+  public DisplaySnapshot(long run, State state, List<Cell> cells, List<Cell> fillerCells, List<Cell> masterCells,
+      CellBounds bounds, DelaunayTriangulation dt, List<EdgeList.Edge> minTree, List<RoomConnection> connections,
+      List<String> outText) {
+    this.run = run;
+    this.state = state;
+    this.cells = copy(cells);
+    this.fillerCells = copy(fillerCells);
+    this.masterCells = copy(masterCells);
+    this.bounds = bounds;
+    this.dtSegments = getSegments(dt);
+    this.minTreeSegments = getSegments(minTree);
+    this.connectionSegments = getConnectionSegments(connections);
+    this.outText = Collections.unmodifiableList(new ArrayList<String>(outText));
+  }
+
+  private static List<Cell> copy(List<Cell> cells) {
+    ArrayList<Cell> list = new ArrayList<Cell>(cells.size());
+    for (int i = 0; i < cells.size(); i++) {
+      Cell cell = cells.get(i);
+      Cell c = new Cell();
+      c.center.set(cell.center.x, cell.center.y);
+      c.size.set(cell.size.x, cell.size.y);
+      c.type = cell.type;
+      c.id = cell.id;
+      list.add(c);
+    }
+    return Collections.unmodifiableList(list);
+  }
+
+  private static int[] getSegments(DelaunayTriangulation dt) {
+    if (dt == null || dt.size() < 4) {
+      return new int[0];
+    }
+    int[] s = new int[64];
+    int n = 0;
+    Iterator<DT_Triangle> it = dt.trianglesIterator();
+    while (it.hasNext()) {
+      DT_Triangle tri = it.next();
+      if (n + 12 > s.length) {
+        int[] t = new int[s.length * 2];
+        System.arraycopy(s, 0, t, 0, n);
+        s = t;
+      }
+      int x1 = (int) tri.p1().x();
+      int y1 = (int) tri.p1().y();
+      int x2 = (int) tri.p2().x();
+      int y2 = (int) tri.p2().y();
+      n = put(s, n, x1, y1, x2, y2);
+      if (!tri.isHalfplane()) {
+        int x3 = (int) tri.p3().x();
+        int y3 = (int) tri.p3().y();
+        n = put(s, n, x2, y2, x3, y3);
+        n = put(s, n, x3, y3, x1, y1);
+      }
+    }
+    int[] t = new int[n];
+    System.arraycopy(s, 0, t, 0, n);
+    return t;
+  }
+
+  private static int[] getSegments(List<EdgeList.Edge> edges) {
+    int[] s = new int[edges.size() * 4];
+    int n = 0;
+    for (int i = 0; i < edges.size(); i++) {
+      EdgeList.Edge e = edges.get(i);
+      n = put(s, n, (int) e.getP1().x(), (int) e.getP1().y(), (int) e.getP2().x(), (int) e.getP2().y());
+    }
+    return s;
+  }
+
+  private static int[] getConnectionSegments(List<RoomConnection> connections) {
+    int count = 0;
+    for (int i = 0; i < connections.size(); i++) {
+      count += connections.get(i).getPoints().size() - 1;
+    }
+    int[] s = new int[count * 4];
+    int n = 0;
+    for (int i = 0; i < connections.size(); i++) {
+      ArrayList<Vector2i> points = connections.get(i).getPoints();
+      for (int k = 1; k < points.size(); k++) {
+        n = put(s, n, points.get(k - 1).x, points.get(k - 1).y, points.get(k).x, points.get(k).y);
+      }
+    }
+    return s;
+  }
+
+  private static int put(int[] s, int n, int x1, int y1, int x2, int y2) {
+    s[n] = x1;
+    s[n + 1] = y1;
+    s[n + 2] = x2;
+    s[n + 3] = y2;
+    return n + 4;
+  }
+
+  public long getRun() {
+    return run;
+  }
+
+  public State getState() {
+    return state;
+  }
+
+  public List<Cell> getCells() {
+    return cells;
+  }
+
+  public List<Cell> getFillerCells() {
+    return fillerCells;
+  }
+
+  public List<Cell> getMasterCells() {
+    return masterCells;
+  }
+
+  /**
+   * @return null before the fill state of a run
+   */
+  public CellBounds getCellBounds() {
+    return bounds;
+  }
+
+  /**
+   * @return the triangulation edges, shared; do not modify
+   */
+  public int[] getDTSegments() {
+    return dtSegments;
+  }
+
+  public int[] getMinTreeSegments() {
+    return minTreeSegments;
+  }
+
+  public int[] getConnectionSegments() {
+    return connectionSegments;
+  }
+
+  public List<String> getOutText() {
+    return outText;
+  }
+
+}
@@ -0,0 +1,172 @@
+package com.sudoplay.tkalgo;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of a single {@link DungeonGenerator} run.
+ * <p>
+ * The lists are unmodifiable and the cells they hold are not referenced by
+ * anything else once generation is complete, so a dungeon can be shared freely
+ * between threads as long as callers do not write to the cells.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class Dungeon {
+
+  private final long seed;
+  private final DungeonParameters parameters;
+  private final CellBounds bounds;
+  private final List<Cell> rooms;
+  private final List<Cell> masterCells;
+  private final List<RoomConnection> corridors;
+  private final List<FillerRegion> fillerRegions;
+  private final TileMap tileMap;
+
+  private final int cellCount;
+  private final int overlapPasses;
+  private final int fillerCount;
+  private final int edgeCount;
+  private final int discardedEdgeCount;
+  private final int loopCount;
+  private final long[] stageNanos;
+
+  Dungeon(GenerationContext c) {
+    seed = c.seed;
+    parameters = new DungeonParameters(c.parameters);
+    bounds = c.bounds;
+    rooms = Collections.unmodifiableList(new ArrayList<Cell>(c.rooms));
+    if (c.parameters.getOutputMode() == OutputMode.TILE_MAP) {
+      tileMap = TileMap.get(c.masterCells, c.bounds, TileMap.DEFAULT_BITS_PER_TILE);
+      masterCells = Collections.<Cell> emptyList();
+    } else {
+      tileMap = null;
+      masterCells = Collections.unmodifiableList(new ArrayList<Cell>(c.masterCells));
+    }
+    corridors = Collections.unmodifiableList(new ArrayList<RoomConnection>(c.corridors));
+    if (c.fillerRegions != null) {
+      fillerRegions = Collections.unmodifiableList(c.fillerRegions.getRegions(new ArrayList<FillerRegion>()));
+    } else {
+      fillerRegions = Collections.<FillerRegion> emptyList();
+    }
+    cellCount = c.cellCount;
+    overlapPasses = c.overlapPasses;
+    fillerCount = c.fillerCount;
+    edgeCount = c.edgeCount;
+    discardedEdgeCount = c.discardedEdgeCount;
+    loopCount = c.loopCount;
+    stageNanos = c.stageNanos.clone();
+  }
+
+  /**
+   * Rebuilds a stored dungeon; stage times are zero.
+   */
+  Dungeon(long seed, DungeonParameters parameters, CellBounds bounds, List<Cell> rooms, List<Cell> masterCells,
+      List<RoomConnection> corridors, List<FillerRegion> fillerRegions, TileMap tileMap, int cellCount,
+      int overlapPasses,
+      int fillerCount, int edgeCount, int discardedEdgeCount, int loopCount) {
+    this.seed = seed;
+    this.parameters = new DungeonParameters(parameters);
+    this.bounds = bounds;
+    this.rooms = Collections.unmodifiableList(rooms);
+    this.masterCells = Collections.unmodifiableList(masterCells);
+    this.corridors = Collections.unmodifiableList(corridors);
+    this.fillerRegions = Collections.unmodifiableList(fillerRegions);
+    this.tileMap = tileMap;
+    this.cellCount = cellCount;
+    this.overlapPasses = overlapPasses;
+    this.fillerCount = fillerCount;
+    this.edgeCount = edgeCount;
+    this.discardedEdgeCount = discardedEdgeCount;
+    this.loopCount = loopCount;
+    stageNanos = new long[GenerationStage.values().length];
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public DungeonParameters getParameters() {
+    return new DungeonParameters(parameters);
+  }
+
+  public CellBounds getBounds() {
+    return bounds;
+  }
+
+  /**
+   * @return the cells selected as rooms
+   */
+  public List<Cell> getRooms() {
+    return rooms;
+  }
+
+  /**
+   * @return every cell touched by a corridor, including the rooms; empty
+   *         when generated with {@link OutputMode#TILE_MAP}
+   */
+  public List<Cell> getMasterCells() {
+    return masterCells;
+  }
+
+  public List<RoomConnection> getCorridors() {
+    return corridors;
+  }
+
+  /**
+   * @return the vacant space left after carving when generated with
+   *         {@link FillMode#RECTANGLES}, otherwise empty
+   */
+  public List<FillerRegion> getFillerRegions() {
+    return fillerRegions;
+  }
+
+  /**
+   * @return the master cells as tiles when generated with
+   *         {@link OutputMode#TILE_MAP}, otherwise null; see
+   *         {@link TileMap#get(List, CellBounds, int)} to rasterize the cells
+   */
+  public TileMap getTileMap() {
+    return tileMap;
+  }
+
+  public int getCellCount() {
+    return cellCount;
+  }
+
+  public int getOverlapPasses() {
+    return overlapPasses;
+  }
+
+  public int getFillerCount() {
+    return fillerCount;
+  }
+
+  public int getEdgeCount() {
+    return edgeCount;
+  }
+
+  public int getDiscardedEdgeCount() {
+    return discardedEdgeCount;
+  }
+
+  public int getLoopCount() {
+    return loopCount;
+  }
+
+  /**
+   * @return the time the stage took in this run
+   */
+  public long getStageNanos(GenerationStage stage) {
+    return stageNanos[stage.ordinal()];
+  }
+
+  @Override
+  public String toString() {
+    return "Dungeon [seed=" + seed + ", rooms=" + rooms.size() + ", masterCells=" + masterCells.size() + ", corridors="
+        + corridors.size() + ", " + bounds + "]";
+  }
+
+}
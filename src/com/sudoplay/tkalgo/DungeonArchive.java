@@ -0,0 +1,173 @@
+package com.sudoplay.tkalgo;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Reads an archive written by {@link DungeonArchiveWriter}.
+ * <p>
+ * The file is memory-mapped. Opening reads only the footer and the parameter
+ * sets; a lookup binary searches the index in place and decodes just the one
+ * dungeon. Reads may run concurrently. Archives are limited to 2 GB, the
+ * size of a single mapping.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class DungeonArchive implements Closeable {
+
+  private final RandomAccessFile file;
+  private final MappedByteBuffer buffer;
+  private final List<DungeonParameters> parameters;
+  private final int indexOffset;
+  private final int entryCount;
+
+  private DungeonArchive(RandomAccessFile file, MappedByteBuffer buffer, List<DungeonParameters> parameters,
+      int indexOffset, int entryCount) {
+    this.file = file;
+    this.buffer = buffer;
+    this.parameters = parameters;
+    this.indexOffset = indexOffset;
+    this.entryCount = entryCount;
+  }
+
+  public static DungeonArchive open(File path) throws IOException {
+    RandomAccessFile file = new RandomAccessFile(path, "r");
+    try {
+      FileChannel channel = file.getChannel();
+      long length = channel.size();
+      if (length > Integer.MAX_VALUE) {
+        throw new IOException("Archive larger than 2 GB: " + path);
+      }
+      if (length < DungeonArchiveWriter.HEADER_SIZE + DungeonArchiveWriter.FOOTER_SIZE) {
+        throw new IOException("Not a dungeon archive: " + path);
+      }
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+      int footer = (int) length - DungeonArchiveWriter.FOOTER_SIZE;
+      if (buffer.getInt(0) != DungeonArchiveWriter.MAGIC
+          || buffer.getInt(footer + 24) != DungeonArchiveWriter.MAGIC) {
+        throw new IOException("Not a dungeon archive: " + path);
+      }
+      if (buffer.getInt(4) != DungeonArchiveWriter.VERSION) {
+        throw new IOException("Unsupported archive version " + buffer.getInt(4) + ": " + path);
+      }
+      int parameterOffset = (int) buffer.getLong(footer);
+      int indexOffset = (int) buffer.getLong(footer + 8);
+      int entryCount = buffer.getInt(footer + 16);
+      int parameterCount = buffer.getInt(footer + 20);
+
+      ByteBuffer in = buffer.duplicate();
+      in.position(parameterOffset);
+      ArrayList<DungeonParameters> parameters = new ArrayList<DungeonParameters>(parameterCount);
+      for (int i = 0; i < parameterCount; i++) {
+        parameters.add(DungeonCodec.readParameters(in));
+      }
+      return new DungeonArchive(file, buffer, Collections.unmodifiableList(parameters), indexOffset, entryCount);
+    } catch (IOException e) {
+      file.close();
+      throw e;
+    } catch (RuntimeException e) {
+      file.close();
+      throw e;
+    }
+  }
+
+  /**
+   * @return the number of dungeons
+   */
+  public int size() {
+    return entryCount;
+  }
+
+  /**
+   * @return the distinct parameter sets in the archive
+   */
+  public List<DungeonParameters> getParameterSets() {
+    return parameters;
+  }
+
+  /**
+   * @return the seed of the i-th dungeon, in seed order
+   */
+  public long getSeed(int i) {
+    return buffer.getLong(entry(i));
+  }
+
+  public DungeonParameters getParameters(int i) {
+    return new DungeonParameters(parameters.get(buffer.getInt(entry(i) + 8)));
+  }
+
+  public Dungeon get(int i) {
+    int e = entry(i);
+    ByteBuffer in = buffer.duplicate();
+    in.position((int) buffer.getLong(e + 12));
+    return DungeonCodec.readDungeon(buffer.getLong(e), parameters.get(buffer.getInt(e + 8)), in);
+  }
+
+  /**
+   * @return the first dungeon with the seed, or null if there is none
+   */
+  public Dungeon get(long seed) {
+    int i = find(seed);
+    return i < entryCount && getSeed(i) == seed ? get(i) : null;
+  }
+
+  /**
+   * @return the dungeon with the seed and parameters, or null if there is none
+   */
+  public Dungeon get(long seed, DungeonParameters p) {
+    int pi = parameters.indexOf(p);
+    if (pi < 0) {
+      return null;
+    }
+    for (int i = find(seed); i < entryCount && getSeed(i) == seed; i++) {
+      if (buffer.getInt(entry(i) + 8) == pi) {
+        return get(i);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Releases the file. The mapping itself is released when it is garbage
+   * collected.
+   */
+  @Override
+  public void close() throws IOException {
+    file.close();
+  }
+
+  /**
+   * @return the index of the first entry with a seed not less than the given
+   *         one
+   */
+  private int find(long seed) {
+    int lo = 0;
+    int hi = entryCount;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (getSeed(mid) < seed) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    return lo;
+  }
+
+  private int entry(int i) {
+    if (i < 0 || i >= entryCount) {
+      throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + entryCount);
+    }
+    return indexOffset + i * DungeonArchiveWriter.ENTRY_SIZE;
+  }
+
+}
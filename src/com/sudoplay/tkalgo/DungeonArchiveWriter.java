@@ -0,0 +1,176 @@
+package com.sudoplay.tkalgo;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Writes dungeons to a single archive file for {@link DungeonArchive}.
+ * <p>
+ * The file holds a header, the encoded dungeons one after another, the
+ * distinct parameter sets, an index of fixed-size entries sorted by seed and
+ * a footer locating the parameters and index. Nothing is readable until the
+ * writer is closed.
+ * <p>
+ * Not thread safe.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class DungeonArchiveWriter implements Closeable {
+
+  static final int MAGIC = 0x544B4441; // TKDA
+  static final int VERSION = 2;
+  static final int HEADER_SIZE = 8;
+  static final int ENTRY_SIZE = 24;
+  static final int FOOTER_SIZE = 28;
+
+  private final OutputStream out;
+  private final ArchiveBuffer buffer = new ArchiveBuffer();
+  private final HashMap<DungeonParameters, Integer> parameterIndex = new HashMap<DungeonParameters, Integer>();
+  private final ArrayList<DungeonParameters> parameters = new ArrayList<DungeonParameters>();
+  private final HashSet<Key> keys = new HashSet<Key>();
+  private final ArrayList<Entry> entries = new ArrayList<Entry>();
+  private long offset;
+  private boolean closed;
+
+  public DungeonArchiveWriter(File file) throws IOException {
+    out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+    buffer.writeInt(MAGIC);
+    buffer.writeInt(VERSION);
+    write();
+  }
+
+  /**
+   * @throws IllegalArgumentException
+   *           if a dungeon with the same seed and parameters was already
+   *           added
+   */
+  public void add(Dungeon dungeon) throws IOException {
+    if (closed) {
+      throw new IllegalStateException("Archive is closed");
+    }
+    DungeonParameters p = dungeon.getParameters();
+    Integer pi = parameterIndex.get(p);
+    if (pi == null) {
+      pi = parameters.size();
+      parameterIndex.put(p, pi);
+      parameters.add(p);
+    }
+    if (!keys.add(new Key(dungeon.getSeed(), pi))) {
+      throw new IllegalArgumentException("Duplicate dungeon for seed " + dungeon.getSeed() + " and " + p);
+    }
+    long start = offset;
+    DungeonCodec.writeDungeon(dungeon, buffer);
+    int length = buffer.size();
+    write();
+    entries.add(new Entry(dungeon.getSeed(), pi, start, length));
+  }
+
+  /**
+   * @return the number of dungeons added
+   */
+  public int size() {
+    return entries.size();
+  }
+
+  /**
+   * Writes the parameters, index and footer and closes the file.
+   */
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      long parameterOffset = offset;
+      for (DungeonParameters p : parameters) {
+        DungeonCodec.writeParameters(p, buffer);
+      }
+      write();
+
+      long indexOffset = offset;
+      Entry[] sorted = entries.toArray(new Entry[entries.size()]);
+      Arrays.sort(sorted);
+      for (Entry e : sorted) {
+        buffer.writeLong(e.seed);
+        buffer.writeInt(e.parameters);
+        buffer.writeLong(e.offset);
+        buffer.writeInt(e.length);
+      }
+      buffer.writeLong(parameterOffset);
+      buffer.writeLong(indexOffset);
+      buffer.writeInt(sorted.length);
+      buffer.writeInt(parameters.size());
+      buffer.writeInt(MAGIC);
+      write();
+    } finally {
+      out.close();
+    }
+  }
+
+  private void write() throws IOException {
+    buffer.writeTo(out);
+    offset += buffer.size();
+    buffer.clear();
+  }
+
+  private static class Key {
+
+    final long seed;
+    final int parameters;
+
+    Key(long seed, int parameters) {
+      this.seed = seed;
+      this.parameters = parameters;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (seed ^ (seed >>> 32)) * 31 + parameters;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return seed == other.seed && parameters == other.parameters;
+    }
+
+  }
+
+  private static class Entry implements Comparable<Entry> {
+
+    final long seed;
+    final int parameters;
+    final long offset;
+    final int length;
+
+    Entry(long seed, int parameters, long offset, int length) {
+      this.seed = seed;
+      this.parameters = parameters;
+      this.offset = offset;
+      this.length = length;
+    }
+
+    @Override
+    public int compareTo(Entry o) {
+      if (seed != o.seed) {
+        return seed < o.seed ? -1 : 1;
+      }
+      return parameters < o.parameters ? -1 : (parameters == o.parameters ? 0 : 1);
+    }
+
+  }
+
+}
@@ -0,0 +1,263 @@
+package com.sudoplay.tkalgo;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent cache of generated dungeons keyed by seed and parameters.
+ * <p>
+ * Dungeons are held in their archive encoding, so the memory bound is exact
+ * and each {@link #get(long, DungeonParameters)} decodes a private copy the
+ * caller may modify. Entries are evicted least recently used first once
+ * their total size passes the bound. Concurrent requests for a missing
+ * dungeon generate it once; the others wait for it.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class DungeonCache {
+
+  private final long maxBytes;
+  private final LinkedHashMap<Key, byte[]> entries = new LinkedHashMap<Key, byte[]>(64, 0.75f, true);
+  private final ConcurrentHashMap<Key, FutureTask<byte[]>> loading = new ConcurrentHashMap<Key, FutureTask<byte[]>>();
+  private long bytes;
+
+  private final AtomicLong hits = new AtomicLong();
+  private final AtomicLong misses = new AtomicLong();
+  private final AtomicLong loads = new AtomicLong();
+  private final AtomicLong loadNanos = new AtomicLong();
+  private final AtomicLong evictions = new AtomicLong();
+
+  /**
+   * @param maxBytes
+   *          bound on the encoded size of the cached dungeons
+   */
+  public DungeonCache(long maxBytes) {
+    if (maxBytes < 0) {
+      throw new IllegalArgumentException("maxBytes must not be negative: " + maxBytes);
+    }
+    this.maxBytes = maxBytes;
+  }
+
+  /**
+   * Returns the dungeon for the seed and parameters, generating it on the
+   * calling thread if it is neither cached nor being generated.
+   */
+  public Dungeon get(long seed, DungeonParameters parameters) {
+    Key key = new Key(seed, parameters);
+    byte[] data;
+    synchronized (entries) {
+      data = entries.get(key);
+    }
+    if (data != null) {
+      hits.incrementAndGet();
+      return decode(key, data);
+    }
+    misses.incrementAndGet();
+
+    final Dungeon[] generated = new Dungeon[1];
+    FutureTask<byte[]> task = loading.get(key);
+    boolean owner = false;
+    if (task == null) {
+      final Key k = key;
+      FutureTask<byte[]> created = new FutureTask<byte[]>(new Callable<byte[]>() {
+        @Override
+        public byte[] call() {
+          return load(k, generated);
+        }
+      });
+      task = loading.putIfAbsent(key, created);
+      if (task == null) {
+        task = created;
+        owner = true;
+      }
+    }
+    try {
+      if (owner) {
+        task.run();
+      }
+      data = task.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted waiting for dungeon " + seed, e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IllegalStateException(cause);
+    } finally {
+      if (owner) {
+        loading.remove(key, task);
+      }
+    }
+    // the loading thread already has the generated dungeon
+    return generated[0] != null ? generated[0] : decode(key, data);
+  }
+
+  /**
+   * @return true if the dungeon is cached; does not count as a use
+   */
+  public boolean contains(long seed, DungeonParameters parameters) {
+    synchronized (entries) {
+      return entries.containsKey(new Key(seed, parameters));
+    }
+  }
+
+  public void invalidate(long seed, DungeonParameters parameters) {
+    synchronized (entries) {
+      byte[] data = entries.remove(new Key(seed, parameters));
+      if (data != null) {
+        bytes -= data.length;
+      }
+    }
+  }
+
+  public void clear() {
+    synchronized (entries) {
+      entries.clear();
+      bytes = 0;
+    }
+  }
+
+  public int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  /**
+   * @return the encoded size of the cached dungeons
+   */
+  public long getBytes() {
+    synchronized (entries) {
+      return bytes;
+    }
+  }
+
+  public long getMaxBytes() {
+    return maxBytes;
+  }
+
+  public long getHitCount() {
+    return hits.get();
+  }
+
+  /**
+   * @return requests not found in the cache, including those that waited for
+   *         another thread's load
+   */
+  public long getMissCount() {
+    return misses.get();
+  }
+
+  /**
+   * @return dungeons generated
+   */
+  public long getLoadCount() {
+    return loads.get();
+  }
+
+  public long getLoadNanos() {
+    return loadNanos.get();
+  }
+
+  public long getEvictionCount() {
+    return evictions.get();
+  }
+
+  public double getHitRate() {
+    long h = hits.get();
+    long n = h + misses.get();
+    return n > 0 ? h / (double) n : 0;
+  }
+
+  private byte[] load(Key key, Dungeon[] generated) {
+    synchronized (entries) {
+      // a load may have completed between the miss and this one starting
+      byte[] data = entries.get(key);
+      if (data != null) {
+        return data;
+      }
+    }
+    long start = System.nanoTime();
+    Dungeon dungeon = new DungeonGenerator(key.parameters).generate(key.seed);
+    ArchiveBuffer buffer = new ArchiveBuffer();
+    DungeonCodec.writeDungeon(dungeon, buffer);
+    byte[] data = buffer.toByteArray();
+    loadNanos.addAndGet(System.nanoTime() - start);
+    loads.incrementAndGet();
+    generated[0] = dungeon;
+    put(key, data);
+    return data;
+  }
+
+  private void put(Key key, byte[] data) {
+    if (data.length > maxBytes) {
+      return;
+    }
+    synchronized (entries) {
+      byte[] old = entries.put(key, data);
+      bytes += data.length - (old != null ? old.length : 0);
+      Iterator<Map.Entry<Key, byte[]>> it = entries.entrySet().iterator();
+      while (bytes > maxBytes && it.hasNext()) {
+        Map.Entry<Key, byte[]> eldest = it.next();
+        bytes -= eldest.getValue().length;
+        it.remove();
+        evictions.incrementAndGet();
+      }
+    }
+  }
+
+  private static Dungeon decode(Key key, byte[] data) {
+    return DungeonCodec.readDungeon(key.seed, key.parameters, ByteBuffer.wrap(data));
+  }
+
+  @Override
+  public String toString() {
+    return "DungeonCache [size=" + size() + ", bytes=" + getBytes() + ", maxBytes=" + maxBytes + ", hits=" + hits
+        + ", misses=" + misses + ", loads=" + loads + ", evictions=" + evictions + "]";
+  }
+
+  private static class Key {
+
+    final long seed;
+    final DungeonParameters parameters;
+    final int hash;
+
+    Key(long seed, DungeonParameters parameters) {
+      this.seed = seed;
+      this.parameters = new DungeonParameters(parameters);
+      hash = 31 * (int) (seed ^ (seed >>> 32)) + this.parameters.hashCode();
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      Key other = (Key) obj;
+      return seed == other.seed && parameters.equals(other.parameters);
+    }
+
+  }
+
+}
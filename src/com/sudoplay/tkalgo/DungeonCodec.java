@@ -0,0 +1,245 @@
+package com.sudoplay.tkalgo;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import com.sudoplay.math.Vector2i;
+
+/**
+ * Encodes dungeons and parameters for {@link DungeonArchiveWriter} and
+ * {@link DungeonArchive}.
+ * <p>
+ * Cell centers, corridor points and filler regions are written as deltas from
+ * the previous one of their kind, and everything as varints, so a typical
+ * cell takes six or seven bytes. Rooms are written as indices into the master
+ * cells where they appear there, so they decode to the same objects. A tile
+ * map is stored as its packed words.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+final class DungeonCodec {
+
+  private DungeonCodec() {
+    //
+  }
+
+  static void writeParameters(DungeonParameters p, ArchiveBuffer out) {
+    out.writeSignedVarInt(p.getAreaCenterX());
+    out.writeSignedVarInt(p.getAreaCenterY());
+    out.writeSignedVarInt(p.getRadius());
+    out.writeSignedVarInt(p.getCellSizeMin());
+    out.writeSignedVarInt(p.getCellSizeMax());
+    out.writeSignedVarInt(p.getCellCount());
+    out.writeSignedVarInt(p.getCellCountVariance());
+    out.writeSignedVarInt(p.getRoomMin());
+    out.writeSignedVarInt(p.getRoomArea());
+    out.writeInt(Float.floatToIntBits(p.getLoopPercentage()));
+    out.writeSignedVarInt(p.getCorridorWidth());
+    out.writeVarInt(p.getOverlapMode().ordinal());
+    out.writeVarInt(p.getSeparationMode().ordinal());
+    out.writeVarInt(p.getFillMode().ordinal());
+    out.writeVarInt(p.getTriangulationMode().ordinal());
+    out.writeVarInt(p.getCellRandomMode().ordinal());
+    out.writeVarInt(p.getOutputMode().ordinal());
+  }
+
+  static DungeonParameters readParameters(ByteBuffer in) {
+    DungeonParameters p = new DungeonParameters();
+    p.setAreaCenter(ArchiveBuffer.readSignedVarInt(in), ArchiveBuffer.readSignedVarInt(in));
+    p.setRadius(ArchiveBuffer.readSignedVarInt(in));
+    p.setCellSize(ArchiveBuffer.readSignedVarInt(in), ArchiveBuffer.readSignedVarInt(in));
+    p.setCellCount(ArchiveBuffer.readSignedVarInt(in), ArchiveBuffer.readSignedVarInt(in));
+    p.setRoomMin(ArchiveBuffer.readSignedVarInt(in));
+    p.setRoomArea(ArchiveBuffer.readSignedVarInt(in));
+    p.setLoopPercentage(Float.intBitsToFloat(in.getInt()));
+    p.setCorridorWidth(ArchiveBuffer.readSignedVarInt(in));
+    p.setOverlapMode(OverlapMode.values()[ArchiveBuffer.readVarInt(in)]);
+    p.setSeparationMode(SeparationMode.values()[ArchiveBuffer.readVarInt(in)]);
+    p.setFillMode(FillMode.values()[ArchiveBuffer.readVarInt(in)]);
+    p.setTriangulationMode(TriangulationMode.values()[ArchiveBuffer.readVarInt(in)]);
+    p.setCellRandomMode(CellRandomMode.values()[ArchiveBuffer.readVarInt(in)]);
+    p.setOutputMode(OutputMode.values()[ArchiveBuffer.readVarInt(in)]);
+    return p;
+  }
+
+  /**
+   * Writes everything but the seed and parameters, which the archive index
+   * holds.
+   */
+  static void writeDungeon(Dungeon d, ArchiveBuffer out) {
+    CellBounds b = d.getBounds();
+    out.writeSignedVarInt(b.getLeft());
+    out.writeSignedVarInt(b.getBottom());
+    out.writeSignedVarInt(b.getWidth());
+    out.writeSignedVarInt(b.getHeight());
+
+    out.writeVarInt(d.getCellCount());
+    out.writeVarInt(d.getOverlapPasses());
+    out.writeVarInt(d.getFillerCount());
+    out.writeVarInt(d.getEdgeCount());
+    out.writeVarInt(d.getDiscardedEdgeCount());
+    out.writeVarInt(d.getLoopCount());
+
+    int[] prev = new int[3];
+    List<Cell> masterCells = d.getMasterCells();
+    IdentityHashMap<Cell, Integer> masterIndex = new IdentityHashMap<Cell, Integer>(masterCells.size() * 2);
+    out.writeVarInt(masterCells.size());
+    for (int i = 0; i < masterCells.size(); i++) {
+      Cell cell = masterCells.get(i);
+      masterIndex.put(cell, i);
+      writeCell(cell, prev, out);
+    }
+
+    List<Cell> rooms = d.getRooms();
+    out.writeVarInt(rooms.size());
+    for (Cell room : rooms) {
+      Integer index = masterIndex.get(room);
+      if (index != null) {
+        out.writeVarInt(index + 1);
+      } else {
+        out.writeVarInt(0);
+        writeCell(room, prev, out);
+      }
+    }
+
+    int px = 0, py = 0;
+    List<RoomConnection> corridors = d.getCorridors();
+    out.writeVarInt(corridors.size());
+    for (RoomConnection corridor : corridors) {
+      ArrayList<Vector2i> points = corridor.getPoints();
+      out.writeVarInt(points.size());
+      for (Vector2i v : points) {
+        out.writeSignedVarInt(v.x - px);
+        out.writeSignedVarInt(v.y - py);
+        px = v.x;
+        py = v.y;
+      }
+    }
+
+    px = 0;
+    py = 0;
+    List<FillerRegion> regions = d.getFillerRegions();
+    out.writeVarInt(regions.size());
+    for (FillerRegion r : regions) {
+      out.writeSignedVarInt(r.getLeft() - px);
+      out.writeSignedVarInt(r.getBottom() - py);
+      out.writeVarInt(r.getWidth());
+      out.writeVarInt(r.getHeight());
+      px = r.getLeft();
+      py = r.getBottom();
+    }
+
+    TileMap tileMap = d.getTileMap();
+    if (tileMap == null) {
+      out.writeVarInt(0);
+    } else {
+      out.writeVarInt(tileMap.getBitsPerTile());
+      out.writeSignedVarInt(tileMap.getLeft());
+      out.writeSignedVarInt(tileMap.getBottom());
+      out.writeVarInt(tileMap.getWidth());
+      out.writeVarInt(tileMap.getHeight());
+      for (long word : tileMap.getWords()) {
+        out.writeLong(word);
+      }
+    }
+  }
+
+  static Dungeon readDungeon(long seed, DungeonParameters parameters, ByteBuffer in) {
+    int left = ArchiveBuffer.readSignedVarInt(in);
+    int bottom = ArchiveBuffer.readSignedVarInt(in);
+    int width = ArchiveBuffer.readSignedVarInt(in);
+    int height = ArchiveBuffer.readSignedVarInt(in);
+    CellBounds bounds = CellBounds.get(left, left + width, bottom, bottom + height);
+
+    int[] counters = new int[6];
+    for (int i = 0; i < counters.length; i++) {
+      counters[i] = ArchiveBuffer.readVarInt(in);
+    }
+
+    int[] prev = new int[3];
+    int n = ArchiveBuffer.readVarInt(in);
+    ArrayList<Cell> masterCells = new ArrayList<Cell>(n);
+    for (int i = 0; i < n; i++) {
+      masterCells.add(readCell(prev, in));
+    }
+
+    n = ArchiveBuffer.readVarInt(in);
+    ArrayList<Cell> rooms = new ArrayList<Cell>(n);
+    for (int i = 0; i < n; i++) {
+      int index = ArchiveBuffer.readVarInt(in);
+      rooms.add(index > 0 ? masterCells.get(index - 1) : readCell(prev, in));
+    }
+
+    int px = 0, py = 0;
+    n = ArchiveBuffer.readVarInt(in);
+    ArrayList<RoomConnection> corridors = new ArrayList<RoomConnection>(n);
+    for (int i = 0; i < n; i++) {
+      int count = ArchiveBuffer.readVarInt(in);
+      ArrayList<Vector2i> points = new ArrayList<Vector2i>(count);
+      for (int j = 0; j < count; j++) {
+        px += ArchiveBuffer.readSignedVarInt(in);
+        py += ArchiveBuffer.readSignedVarInt(in);
+        points.add(new Vector2i(px, py));
+      }
+      corridors.add(RoomConnection.get(points));
+    }
+
+    px = 0;
+    py = 0;
+    n = ArchiveBuffer.readVarInt(in);
+    ArrayList<FillerRegion> regions = new ArrayList<FillerRegion>(n);
+    for (int i = 0; i < n; i++) {
+      px += ArchiveBuffer.readSignedVarInt(in);
+      py += ArchiveBuffer.readSignedVarInt(in);
+      regions.add(new FillerRegion(px, py, ArchiveBuffer.readVarInt(in), ArchiveBuffer.readVarInt(in)));
+    }
+
+    TileMap tileMap = null;
+    int bitsPerTile = ArchiveBuffer.readVarInt(in);
+    if (bitsPerTile > 0) {
+      left = ArchiveBuffer.readSignedVarInt(in);
+      bottom = ArchiveBuffer.readSignedVarInt(in);
+      width = ArchiveBuffer.readVarInt(in);
+      height = ArchiveBuffer.readVarInt(in);
+      tileMap = new TileMap(left, bottom, width, height, bitsPerTile);
+      long[] words = tileMap.getWords();
+      for (int i = 0; i < words.length; i++) {
+        words[i] = in.getLong();
+      }
+    }
+
+    return new Dungeon(seed, parameters, bounds, rooms, masterCells, corridors, regions, tileMap, counters[0],
+        counters[1], counters[2], counters[3], counters[4], counters[5]);
+  }
+
+  /**
+   * @param prev
+   *          center x, center y and id of the previous cell, updated
+   */
+  private static void writeCell(Cell cell, int[] prev, ArchiveBuffer out) {
+    out.writeSignedVarInt(cell.center.x - prev[0]);
+    out.writeSignedVarInt(cell.center.y - prev[1]);
+    out.writeVarInt(cell.size.x);
+    out.writeVarInt(cell.size.y);
+    out.writeSignedVarInt(cell.type);
+    out.writeSignedVarInt(cell.id - prev[2]);
+    prev[0] = cell.center.x;
+    prev[1] = cell.center.y;
+    prev[2] = cell.id;
+  }
+
+  private static Cell readCell(int[] prev, ByteBuffer in) {
+    Cell cell = new Cell();
+    cell.center.x = prev[0] += ArchiveBuffer.readSignedVarInt(in);
+    cell.center.y = prev[1] += ArchiveBuffer.readSignedVarInt(in);
+    cell.size.x = ArchiveBuffer.readVarInt(in);
+    cell.size.y = ArchiveBuffer.readVarInt(in);
+    cell.type = ArchiveBuffer.readSignedVarInt(in);
+    cell.id = prev[2] += ArchiveBuffer.readSignedVarInt(in);
+    return cell;
+  }
+
+}
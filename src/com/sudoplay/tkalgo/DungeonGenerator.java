@@ -0,0 +1,375 @@
+package com.sudoplay.tkalgo;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+import com.sudoplay.math.Vector2i;
+import com.sudoplay.math.delaunay.DT_Point;
+import com.sudoplay.math.delaunay.DelaunayTriangulation;
+
+/**
+ * Runs the generation pipeline without any display.
+ * <p>
+ * Produces the same dungeon as {@link Main} for the same seed and parameters,
+ * but does not sleep, repaint or log. A generator holds no state between runs
+ * and may be shared between threads.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class DungeonGenerator {
+
+  private final DungeonParameters parameters;
+  private final List<GenerationListener> listeners = new CopyOnWriteArrayList<GenerationListener>();
+
+  public DungeonGenerator() {
+    this(new DungeonParameters());
+  }
+
+  public DungeonGenerator(DungeonParameters parameters) {
+    this.parameters = new DungeonParameters(parameters);
+  }
+
+  public DungeonParameters getParameters() {
+    return new DungeonParameters(parameters);
+  }
+
+  /**
+   * Listeners are called for every run, from the thread doing the run.
+   */
+  public void addListener(GenerationListener listener) {
+    listeners.add(listener);
+  }
+
+  public void removeListener(GenerationListener listener) {
+    listeners.remove(listener);
+  }
+
+  public Dungeon generate(long seed) {
+    GenerationContext c = new GenerationContext(parameters, seed);
+    if (!listeners.isEmpty()) {
+      return generateObserved(c);
+    }
+    long t = System.nanoTime();
+    for (GenerationStage stage : GenerationStage.values()) {
+      runStage(stage, c);
+      t = c.endStage(stage, t);
+    }
+    return new Dungeon(c);
+  }
+
+  /**
+   * Same as {@link #generate(long)}, also measuring allocation and notifying
+   * listeners between stages, outside the measured time.
+   */
+  private Dungeon generateObserved(GenerationContext c) {
+    long allocated = ThreadAllocation.getAllocatedBytes();
+    long t = System.nanoTime();
+    for (GenerationStage stage : GenerationStage.values()) {
+      runStage(stage, c);
+      c.endStage(stage, t);
+      long now = ThreadAllocation.getAllocatedBytes();
+      StageMetrics metrics = new StageMetrics(stage, c.seed, c.stageNanos[stage.ordinal()], allocated < 0 ? -1 : now
+          - allocated, c.getCounters());
+      for (GenerationListener listener : listeners) {
+        listener.stageCompleted(metrics);
+      }
+      allocated = ThreadAllocation.getAllocatedBytes();
+      t = System.nanoTime();
+    }
+    Dungeon dungeon = new Dungeon(c);
+    for (GenerationListener listener : listeners) {
+      listener.generationCompleted(dungeon);
+    }
+    return dungeon;
+  }
+
+  static void runStage(GenerationStage stage, GenerationContext c) {
+    switch (stage) {
+    case GENERATE:
+      generateCells(c);
+      break;
+    case SEPARATE:
+      separateCells(c);
+      break;
+    case FILL:
+      fillCells(c);
+      break;
+    case SELECT:
+      selectRooms(c);
+      break;
+    case TRIANGULATE:
+      triangulate(c);
+      break;
+    case MINSPAN:
+      buildMinSpanTree(c);
+      break;
+    case LOOPS:
+      addLoops(c);
+      break;
+    case CONNECTION:
+      connectRooms(c);
+      break;
+    case INTERSECTION:
+      intersectCorridors(c);
+      break;
+    }
+  }
+
+  static void generateCells(GenerationContext c) {
+    DungeonParameters p = c.parameters;
+    Vector2i cellSize = new Vector2i(p.getCellSizeMin(), p.getCellSizeMax());
+    Vector2i areaCenter = new Vector2i(p.getAreaCenterX(), p.getAreaCenterY());
+    c.cellCount = p.getCellCount();
+    if (p.getCellCountVariance() > 0) {
+      c.cellCount += c.rand.nextInt(p.getCellCountVariance());
+    }
+    if (p.getCellRandomMode() == CellRandomMode.PER_CELL) {
+      c.store.resize(c.cellCount);
+      CellTask task = new CellTask(c.seed, cellSize, areaCenter, p.getRadius(), c.store, 0, c.cellCount);
+      if (ForkJoinTask.inForkJoinPool()) {
+        task.invoke();
+      } else {
+        CellPool.POOL.invoke(task);
+      }
+      return;
+    }
+    for (int i = 0; i < c.cellCount; i++) {
+      Generator.generateCell(c.rand, cellSize, areaCenter, p.getRadius(), c.store);
+    }
+  }
+
+  /**
+   * Generates cells [from, to) of the store, each from its own
+   * {@link CounterRandom} stream, splitting into chunks.
+   */
+  @SuppressWarnings("serial")
+  private static class CellTask extends RecursiveAction {
+
+    private static final int CHUNK = 1024;
+
+    private final long seed;
+    private final Vector2i cellSize;
+    private final Vector2i areaCenter;
+    private final int radius;
+    private final CellStore store;
+    private final int from;
+    private final int to;
+
+    CellTask(long seed, Vector2i cellSize, Vector2i areaCenter, int radius, CellStore store, int from, int to) {
+      this.seed = seed;
+      this.cellSize = cellSize;
+      this.areaCenter = areaCenter;
+      this.radius = radius;
+      this.store = store;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from <= CHUNK) {
+        CounterRandom rand = new CounterRandom(seed);
+        for (int i = from; i < to; i++) {
+          rand.setStream(i);
+          Generator.generateCell(rand, cellSize, areaCenter, radius, store, i);
+        }
+        return;
+      }
+      int mid = (from + to) >>> 1;
+      invokeAll(new CellTask(seed, cellSize, areaCenter, radius, store, from, mid), new CellTask(seed, cellSize,
+          areaCenter, radius, store, mid, to));
+    }
+
+  }
+
+  /**
+   * Pool for per-cell generation and parallel separation outside a fork/join
+   * pool, created on first use. Its threads are daemons.
+   */
+  private static class CellPool {
+
+    static final ForkJoinPool POOL = new ForkJoinPool();
+
+  }
+
+  static void separateCells(GenerationContext c) {
+    SeparationMode mode = c.parameters.getSeparationMode();
+    if (mode == SeparationMode.STEERING) {
+      OverlapEngine engine = c.parameters.getOverlapMode().createEngine();
+      while (engine.isAnyOverlap(c.store)) {
+        engine.moveCells(c.rand, c.store);
+        c.overlapPasses++;
+      }
+    } else {
+      ForkJoinPool pool = mode == SeparationMode.PARALLEL_MINIMUM_TRANSLATION ? CellPool.POOL : null;
+      MinimumTranslationSeparator separator = new MinimumTranslationSeparator(
+          MinimumTranslationSeparator.DEFAULT_DAMPING, pool);
+      c.overlapPasses = separator.separate(c.store);
+      c.separationCycles = separator.getCycleCount();
+    }
+    c.store.toCells(c.cells);
+  }
+
+  /**
+   * Filler tiles are left implicit in the occupancy grid; filler cells are only
+   * created for the tiles a corridor crosses.
+   */
+  static void fillCells(GenerationContext c) {
+    c.bounds = CellBounds.get(c.store);
+    c.occupancy = new OccupancyGrid(c.bounds);
+    c.occupancy.stamp(c.store);
+    c.fillerCount = c.occupancy.getVacantCount();
+    if (c.parameters.getFillMode() == FillMode.RECTANGLES) {
+      c.fillerRegions = new FillerRegionMap(c.occupancy);
+    }
+  }
+
+  static void selectRooms(GenerationContext c) {
+    DungeonParameters p = c.parameters;
+    for (Cell cell : c.cells) {
+      if (cell.getArea() > p.getRoomArea()) {
+        c.rooms.add(cell);
+        cell.type = Cell.TYPE_ROOM;
+      }
+    }
+    /*
+     * Ensure that the minimum room count is reached
+     */
+    if (c.rooms.size() < p.getRoomMin()) {
+      ArrayList<Cell> list = new ArrayList<Cell>(c.cells);
+      if (!c.rooms.isEmpty()) {
+        CellSet.removeAll(list, new CellSet(c.rooms));
+      }
+      Collections.sort(list, new CellAreaSorter());
+      Cell cell;
+      while (c.rooms.size() < p.getRoomMin() && !list.isEmpty()) {
+        cell = list.remove(0);
+        cell.type = Cell.TYPE_ROOM;
+        c.rooms.add(cell);
+      }
+    }
+  }
+
+  static void triangulate(GenerationContext c) {
+    if (c.parameters.getTriangulationMode() == TriangulationMode.BUILT_IN) {
+      triangulateBuiltIn(c);
+      return;
+    }
+    c.dt = new DelaunayTriangulation();
+    for (Cell room : c.rooms) {
+      c.dt.insertPoint(new DT_Point(room.center.x, room.center.y));
+    }
+    EdgeList edges = new EdgeList(c.dt);
+    c.edgeList = edges.getList();
+    c.edgeCount = c.edgeList.size();
+    c.forest = new IntDisjointSet(edges.getVertexCount());
+  }
+
+  private static void triangulateBuiltIn(GenerationContext c) {
+    int n = c.rooms.size();
+    int[] x = new int[n];
+    int[] y = new int[n];
+    for (int i = 0; i < n; i++) {
+      Cell room = c.rooms.get(i);
+      x[i] = room.center.x;
+      y[i] = room.center.y;
+    }
+    DelaunayTriangulator triangulator = new DelaunayTriangulator();
+    int edgeCount = triangulator.triangulate(x, y, n);
+    EdgeList edges = new EdgeList(x, y, n, triangulator.getEdges(), edgeCount);
+    c.edgeList = edges.getList();
+    c.edgeCount = c.edgeList.size();
+    c.forest = new IntDisjointSet(n);
+  }
+
+  static void buildMinSpanTree(GenerationContext c) {
+    IntDisjointSet forest = c.forest;
+    while (c.edgeList.size() > 0) {
+      EdgeList.Edge edge = c.edgeList.remove(c.edgeList.size() - 1);
+      if (forest.union(edge.getV1(), edge.getV2())) {
+        c.minTree.add(edge);
+      } else {
+        c.discardEdge.add(edge);
+      }
+    }
+    c.discardedEdgeCount = c.discardEdge.size();
+  }
+
+  static void addLoops(GenerationContext c) {
+    if (c.discardEdge.isEmpty()) {
+      return;
+    }
+    int loopsToAdd = (int) (c.parameters.getLoopPercentage() * c.discardEdge.size());
+    c.minTree.add(c.discardEdge.remove(c.discardEdge.size() - 1));
+    loopsToAdd--;
+    c.loopCount++;
+    Collections.shuffle(c.discardEdge, c.rand);
+    while (loopsToAdd > 0) {
+      c.minTree.add(c.discardEdge.remove(c.discardEdge.size() - 1));
+      loopsToAdd--;
+      c.loopCount++;
+    }
+  }
+
+  static void connectRooms(GenerationContext c) {
+    Vector2i start = new Vector2i();
+    Vector2i end = new Vector2i();
+    Vector2i v = new Vector2i();
+    while (c.minTree.size() > 0) {
+      EdgeList.Edge e = c.minTree.remove(c.minTree.size() - 1);
+      Generator.getVectorFromDTPoint(e.getP1(), start);
+      Generator.getVectorFromDTPoint(e.getP2(), end);
+      if (start.x == end.x || start.y == end.y) {
+        c.connections.add(RoomConnection.get(start, end));
+      } else {
+        if (c.rand.nextBoolean()) {
+          v.set(start.x, end.y);
+        } else {
+          v.set(end.x, start.y);
+        }
+        c.connections.add(RoomConnection.get(start, v, end));
+      }
+    }
+  }
+
+  static void intersectCorridors(GenerationContext c) {
+    int extraWidth = c.parameters.getCorridorWidth();
+    CorridorCarver carver = new CorridorCarver(c.store, c.occupancy);
+    ArrayList<Cell> indexed = new ArrayList<Cell>(c.cells);
+    ArrayList<Cell> intersecting = new ArrayList<Cell>();
+    ArrayList<Cell> filler = new ArrayList<Cell>();
+    CellSet carved = new CellSet();
+    while (c.connections.size() > 0) {
+      RoomConnection con = c.connections.remove(c.connections.size() - 1);
+      intersecting.clear();
+      filler.clear();
+      BitSet touched = carver.carve(con, extraWidth, filler);
+      for (int id = touched.nextSetBit(0); id >= 0; id = touched.nextSetBit(id + 1)) {
+        intersecting.add(indexed.get(id));
+      }
+      carved.addAll(intersecting);
+      intersecting.addAll(filler);
+      c.masterCells.addAll(intersecting);
+      c.corridors.add(con);
+      if (c.fillerRegions != null) {
+        for (Cell cell : intersecting) {
+          if (cell.type == Cell.TYPE_FILL) {
+            c.fillerRegions.markCarved(cell.center.x, cell.center.y);
+          }
+        }
+      }
+    }
+    CellSet.removeAll(c.cells, carved);
+    if (c.fillerRegions != null) {
+      c.fillerRegions.split();
+    }
+  }
+
+}
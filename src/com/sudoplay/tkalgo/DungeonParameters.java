@@ -0,0 +1,333 @@
+package com.sudoplay.tkalgo;
+
+/**
+ * Parameters for a {@link DungeonGenerator}.
+ * <p>
+ * Setters return this instance so parameters can be chained. The generator
+ * keeps its own copy, so changing an instance after handing it to a generator
+ * has no effect on that generator.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class DungeonParameters {
+
+  private int areaCenterX = 192;
+  private int areaCenterY = 96;
+  private int radius = 16;
+  private int cellSizeMin = 1;
+  private int cellSizeMax = 12;
+  private int cellCount = 50;
+  private int cellCountVariance = 150;
+  private int roomMin = 4;
+  private int roomArea = 42;
+  private float loopPercentage = 0.15f;
+  private int corridorWidth = 1;
+  private OverlapMode overlapMode = OverlapMode.BRUTE_FORCE;
+  private SeparationMode separationMode = SeparationMode.STEERING;
+  private FillMode fillMode = FillMode.TILES;
+  private TriangulationMode triangulationMode = TriangulationMode.EXTERNAL;
+  private CellRandomMode cellRandomMode = CellRandomMode.SHARED;
+  private OutputMode outputMode = OutputMode.CELLS;
+
+  public DungeonParameters() {
+    //
+  }
+
+  public DungeonParameters(DungeonParameters p) {
+    areaCenterX = p.areaCenterX;
+    areaCenterY = p.areaCenterY;
+    radius = p.radius;
+    cellSizeMin = p.cellSizeMin;
+    cellSizeMax = p.cellSizeMax;
+    cellCount = p.cellCount;
+    cellCountVariance = p.cellCountVariance;
+    roomMin = p.roomMin;
+    roomArea = p.roomArea;
+    loopPercentage = p.loopPercentage;
+    corridorWidth = p.corridorWidth;
+    overlapMode = p.overlapMode;
+    separationMode = p.separationMode;
+    fillMode = p.fillMode;
+    triangulationMode = p.triangulationMode;
+    cellRandomMode = p.cellRandomMode;
+    outputMode = p.outputMode;
+  }
+
+  public int getAreaCenterX() {
+    return areaCenterX;
+  }
+
+  public int getAreaCenterY() {
+    return areaCenterY;
+  }
+
+  /**
+   * Cells are generated around this point.
+   */
+  public DungeonParameters setAreaCenter(int x, int y) {
+    areaCenterX = x;
+    areaCenterY = y;
+    return this;
+  }
+
+  public int getRadius() {
+    return radius;
+  }
+
+  /**
+   * Cell centers are placed within this radius of the area center.
+   */
+  public DungeonParameters setRadius(int radius) {
+    this.radius = radius;
+    return this;
+  }
+
+  public int getCellSizeMin() {
+    return cellSizeMin;
+  }
+
+  public int getCellSizeMax() {
+    return cellSizeMax;
+  }
+
+  /**
+   * Cell size is distance from center to any axis edge.
+   */
+  public DungeonParameters setCellSize(int min, int max) {
+    cellSizeMin = min;
+    cellSizeMax = max;
+    return this;
+  }
+
+  public int getCellCount() {
+    return cellCount;
+  }
+
+  public int getCellCountVariance() {
+    return cellCountVariance;
+  }
+
+  /**
+   * The number of generated cells is <code>count</code> plus a random amount
+   * less than <code>variance</code>; a variance of zero generates exactly
+   * <code>count</code> cells.
+   */
+  public DungeonParameters setCellCount(int count, int variance) {
+    cellCount = count;
+    cellCountVariance = variance;
+    return this;
+  }
+
+  public int getRoomMin() {
+    return roomMin;
+  }
+
+  /**
+   * The largest cells are promoted to rooms until this many rooms exist.
+   */
+  public DungeonParameters setRoomMin(int roomMin) {
+    this.roomMin = roomMin;
+    return this;
+  }
+
+  public int getRoomArea() {
+    return roomArea;
+  }
+
+  /**
+   * Cells with an area greater than this are selected as rooms.
+   */
+  public DungeonParameters setRoomArea(int roomArea) {
+    this.roomArea = roomArea;
+    return this;
+  }
+
+  public float getLoopPercentage() {
+    return loopPercentage;
+  }
+
+  /**
+   * Percentage of the edges discarded by the min-span tree that are added back
+   * in as loops.
+   */
+  public DungeonParameters setLoopPercentage(float loopPercentage) {
+    this.loopPercentage = loopPercentage;
+    return this;
+  }
+
+  public int getCorridorWidth() {
+    return corridorWidth;
+  }
+
+  /**
+   * Distance a corridor extends to either side of its center line.
+   */
+  public DungeonParameters setCorridorWidth(int corridorWidth) {
+    this.corridorWidth = corridorWidth;
+    return this;
+  }
+
+  public OverlapMode getOverlapMode() {
+    return overlapMode;
+  }
+
+  /**
+   * Selects how overlapping cells are found during separation. Every mode
+   * produces the same dungeon.
+   */
+  public DungeonParameters setOverlapMode(OverlapMode overlapMode) {
+    this.overlapMode = overlapMode;
+    return this;
+  }
+
+  public SeparationMode getSeparationMode() {
+    return separationMode;
+  }
+
+  /**
+   * Selects how overlapping cells are moved apart. Unlike the overlap mode,
+   * this changes the dungeon generated for a seed.
+   */
+  public DungeonParameters setSeparationMode(SeparationMode separationMode) {
+    this.separationMode = separationMode;
+    return this;
+  }
+
+  public FillMode getFillMode() {
+    return fillMode;
+  }
+
+  public DungeonParameters setFillMode(FillMode fillMode) {
+    this.fillMode = fillMode;
+    return this;
+  }
+
+  public TriangulationMode getTriangulationMode() {
+    return triangulationMode;
+  }
+
+  /**
+   * Selects how room centers are triangulated. Both modes give a Delaunay
+   * triangulation, but where several are valid (four or more co-circular
+   * rooms) they may choose differently, and edges of equal length may be
+   * ordered differently, so the spanning tree can differ.
+   */
+  public DungeonParameters setTriangulationMode(TriangulationMode triangulationMode) {
+    this.triangulationMode = triangulationMode;
+    return this;
+  }
+
+  public CellRandomMode getCellRandomMode() {
+    return cellRandomMode;
+  }
+
+  /**
+   * Selects where cells draw their random numbers from. The modes give
+   * different dungeons for the same seed; {@link CellRandomMode#PER_CELL}
+   * generates cells in parallel and gives the same dungeon for any number of
+   * threads.
+   */
+  public DungeonParameters setCellRandomMode(CellRandomMode cellRandomMode) {
+    this.cellRandomMode = cellRandomMode;
+    return this;
+  }
+
+  public OutputMode getOutputMode() {
+    return outputMode;
+  }
+
+  public DungeonParameters setOutputMode(OutputMode outputMode) {
+    this.outputMode = outputMode;
+    return this;
+  }
+
+  @Override
+  public String toString() {
+    return "DungeonParameters [areaCenter=(" + areaCenterX + ", " + areaCenterY + "), radius=" + radius + ", cellSize=("
+        + cellSizeMin + ", " + cellSizeMax + "), cellCount=" + cellCount + ", cellCountVariance=" + cellCountVariance
+        + ", roomMin=" + roomMin + ", roomArea=" + roomArea + ", loopPercentage=" + loopPercentage + ", corridorWidth="
+        + corridorWidth + ", overlapMode=" + overlapMode + ", separationMode=" + separationMode
+        + ", fillMode=" + fillMode + ", triangulationMode=" + triangulationMode
+        + ", cellRandomMode=" + cellRandomMode + ", outputMode=" + outputMode + "]";
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + areaCenterX;
+    result = prime * result + areaCenterY;
+    result = prime * result + radius;
+    result = prime * result + cellSizeMin;
+    result = prime * result + cellSizeMax;
+    result = prime * result + cellCount;
+    result = prime * result + cellCountVariance;
+    result = prime * result + roomMin;
+    result = prime * result + roomArea;
+    result = prime * result + Float.floatToIntBits(loopPercentage);
+    result = prime * result + corridorWidth;
+    result = prime * result + ((overlapMode == null) ? 0 : overlapMode.hashCode());
+    result = prime * result + ((separationMode == null) ? 0 : separationMode.hashCode());
+    result = prime * result + ((fillMode == null) ? 0 : fillMode.hashCode());
+    result = prime * result + ((triangulationMode == null) ? 0 : triangulationMode.hashCode());
+    result = prime * result + ((cellRandomMode == null) ? 0 : cellRandomMode.hashCode());
+    result = prime * result + ((outputMode == null) ? 0 : outputMode.hashCode());
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null) {
+      return false;
+    }
+    if (getClass() != obj.getClass()) {
+      return false;
+    }
+    DungeonParameters other = (DungeonParameters) obj;
+    if (areaCenterX != other.areaCenterX || areaCenterY != other.areaCenterY) {
+      return false;
+    }
+    if (radius != other.radius) {
+      return false;
+    }
+    if (cellSizeMin != other.cellSizeMin || cellSizeMax != other.cellSizeMax) {
+      return false;
+    }
+    if (cellCount != other.cellCount || cellCountVariance != other.cellCountVariance) {
+      return false;
+    }
+    if (roomMin != other.roomMin || roomArea != other.roomArea) {
+      return false;
+    }
+    if (Float.floatToIntBits(loopPercentage) != Float.floatToIntBits(other.loopPercentage)) {
+      return false;
+    }
+    if (corridorWidth != other.corridorWidth) {
+      return false;
+    }
+    if (overlapMode != other.overlapMode) {
+      return false;
+    }
+    if (separationMode != other.separationMode) {
+      return false;
+    }
+    if (fillMode != other.fillMode) {
+      return false;
+    }
+    if (triangulationMode != other.triangulationMode) {
+      return false;
+    }
+    if (cellRandomMode != other.cellRandomMode) {
+      return false;
+    }
+    if (outputMode != other.outputMode) {
+      return false;
+    }
+    return true;
+  }
+
+}
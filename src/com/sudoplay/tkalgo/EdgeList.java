@@ -1,7 +1,7 @@
 package com.sudoplay.tkalgo;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 
@@ -13,15 +13,27 @@ public class EdgeList {
 
   public class Edge implements Comparable<Edge> {
 
+    private final DT_Point p1;
+    private final DT_Point p2;
     private final DisjointSetForest<DT_Point>.Node n1;
     private final DisjointSetForest<DT_Point>.Node n2;
+    private final int v1;
+    private final int v2;
     private final int distanceSquared;
 
     public Edge(DisjointSetForest<DT_Point>.Node n1, DisjointSetForest<DT_Point>.Node n2) {
+      this(n1.ref, n2.ref, n1, n2, -1, -1);
+    }
+
+    Edge(DT_Point p1, DT_Point p2, DisjointSetForest<DT_Point>.Node n1, DisjointSetForest<DT_Point>.Node n2, int v1, int v2) {
+      this.p1 = p1;
+      this.p2 = p2;
       this.n1 = n1;
       this.n2 = n2;
-      int dx = (int) (n2.ref.x() - n1.ref.x());
-      int dy = (int) (n2.ref.y() - n1.ref.y());
+      this.v1 = v1;
+      this.v2 = v2;
+      int dx = (int) (p2.x() - p1.x());
+      int dy = (int) (p2.y() - p1.y());
       distanceSquared = dx * dx + dy * dy;
     }
 
@@ -30,13 +42,17 @@ public class EdgeList {
     }
 
     public DT_Point getP1() {
-      return n1.ref;
+      return p1;
     }
 
     public DT_Point getP2() {
-      return n2.ref;
+      return p2;
     }
 
+    /**
+     * @return the forest node of the first vertex, or null if the edge list was
+     *         built without a forest
+     */
     public DisjointSetForest<DT_Point>.Node getN1() {
       return n1;
     }
@@ -45,13 +61,22 @@ public class EdgeList {
       return n2;
     }
 
+    /**
+     * @return the index of the first vertex, in triangulation vertex order, or
+     *         -1 if the edge was not built by an edge list
+     */
+    public int getV1() {
+      return v1;
+    }
+
+    public int getV2() {
+      return v2;
+    }
+
     @Override
     public int hashCode() {
-      final int prime = 31;
-      int result = 1;
-      result = prime * result + ((n1 == null) ? 0 : n1.hashCode());
-      result = prime * result + ((n2 == null) ? 0 : n2.hashCode());
-      return result;
+      // symmetric, as equals ignores direction
+      return p1.hashCode() + p2.hashCode();
     }
 
     @Override
@@ -66,13 +91,13 @@ public class EdgeList {
         return false;
       }
       Edge other = (Edge) obj;
-      if (!n1.equals(other.n1)) {
-        if (!(n1.equals(other.n2) && n2.equals(other.n1))) {
+      if (!p1.equals(other.p1)) {
+        if (!(p1.equals(other.p2) && p2.equals(other.p1))) {
           return false;
         }
       }
-      if (!n2.equals(other.n2)) {
-        if (!(n1.equals(other.n2) && n2.equals(other.n1))) {
+      if (!p2.equals(other.p2)) {
+        if (!(p1.equals(other.p2) && p2.equals(other.p1))) {
           return false;
         }
       }
@@ -92,45 +117,116 @@ public class EdgeList {
   }
 
   private ArrayList<Edge> list = new ArrayList<Edge>();
+  private ArrayList<DT_Point> points = new ArrayList<DT_Point>();
+  private ArrayList<DisjointSetForest<DT_Point>.Node> nodes;
+
+  /**
+   * Builds the edge list without forest nodes; use the vertex indices with an
+   * {@link IntDisjointSet} of {@link #getVertexCount()} elements.
+   */
+  public EdgeList(DelaunayTriangulation dt) {
+    this(dt, null);
+  }
 
+  /**
+   * Vertices are numbered in the order the triangulation iterates them. Edges
+   * are deduplicated on their packed (min, max) vertex indices and the list is
+   * sorted by decreasing length; edges of equal length keep the order they
+   * were first seen in.
+   * 
+   * @param forest
+   *          if not null, a set is made in it for each vertex
+   */
   public EdgeList(DelaunayTriangulation dt, DisjointSetForest<DT_Point> forest) {
     Iterator<DT_Point> itp = dt.verticesIterator();
-    HashMap<DT_Point, DisjointSetForest<DT_Point>.Node> nodeMap = new HashMap<DT_Point, DisjointSetForest<DT_Point>.Node>();
+    HashMap<DT_Point, Integer> indexMap = new HashMap<DT_Point, Integer>();
+    if (forest != null) {
+      nodes = new ArrayList<DisjointSetForest<DT_Point>.Node>();
+    }
     DT_Point p;
     while (itp.hasNext()) {
       p = itp.next();
-      nodeMap.put(p, forest.makeSet(p));
+      indexMap.put(p, points.size());
+      points.add(p);
+      if (forest != null) {
+        nodes.add(forest.makeSet(p));
+      }
     }
 
-    Edge e;
-    DisjointSetForest<DT_Point>.Node n1, n2, n3;
+    ArrayList<Edge> edges = new ArrayList<Edge>();
+    LongHashSet keys = new LongHashSet(points.size() * 3);
+    int i1, i2, i3;
     DT_Triangle tri;
     Iterator<DT_Triangle> itt = dt.trianglesIterator();
     while (itt.hasNext()) {
       tri = itt.next();
-      n1 = nodeMap.get(tri.p1());
-      n2 = nodeMap.get(tri.p2());
-      e = new Edge(n1, n2);
-      if (!list.contains(e)) {
-        list.add(e);
-      }
+      i1 = indexMap.get(tri.p1());
+      i2 = indexMap.get(tri.p2());
+      addEdge(i1, i2, keys, edges);
       if (!tri.isHalfplane()) {
-        n3 = nodeMap.get(tri.p3());
-        e = new Edge(n2, n3);
-        if (!list.contains(e)) {
-          list.add(e);
-        }
-        e = new Edge(n3, n1);
-        if (!list.contains(e)) {
-          list.add(e);
-        }
+        i3 = indexMap.get(tri.p3());
+        addEdge(i2, i3, keys, edges);
+        addEdge(i3, i1, keys, edges);
+      }
+    }
+    sort(edges);
+  }
+
+  /**
+   * Builds the edge list from vertex index pairs, such as the output of a
+   * {@link DelaunayTriangulator}. Vertex i is the point (x[i], y[i]); edges are
+   * deduplicated and sorted as above.
+   * 
+   * @param edges
+   *          two vertex indices per edge
+   */
+  public EdgeList(int[] x, int[] y, int vertexCount, int[] edges, int edgeCount) {
+    points.ensureCapacity(vertexCount);
+    for (int i = 0; i < vertexCount; i++) {
+      points.add(new DT_Point(x[i], y[i]));
+    }
+    ArrayList<Edge> unique = new ArrayList<Edge>(edgeCount);
+    LongHashSet keys = new LongHashSet(edgeCount);
+    for (int e = 0; e < edgeCount; e++) {
+      addEdge(edges[e * 2], edges[e * 2 + 1], keys, unique);
+    }
+    sort(unique);
+  }
+
+  private void addEdge(int i1, int i2, LongHashSet keys, ArrayList<Edge> edges) {
+    long key = i1 < i2 ? ((long) i1 << 32) | i2 : ((long) i2 << 32) | i1;
+    if (keys.add(key)) {
+      if (nodes != null) {
+        edges.add(new Edge(points.get(i1), points.get(i2), nodes.get(i1), nodes.get(i2), i1, i2));
+      } else {
+        edges.add(new Edge(points.get(i1), points.get(i2), null, null, i1, i2));
       }
     }
-    Collections.sort(list);
+  }
+
+  /**
+   * Sorts on primitive keys of (length, reversed insertion index) and fills
+   * the list from the end, which gives the same order as a stable sort by
+   * decreasing length.
+   */
+  private void sort(ArrayList<Edge> edges) {
+    long[] order = new long[edges.size()];
+    for (int i = 0; i < order.length; i++) {
+      order[i] = ((long) edges.get(i).distanceSquared << 32) | (Integer.MAX_VALUE - i);
+    }
+    Arrays.sort(order);
+    list.ensureCapacity(order.length);
+    for (int k = order.length - 1; k >= 0; k--) {
+      list.add(edges.get(Integer.MAX_VALUE - (int) order[k]));
+    }
   }
 
   public ArrayList<Edge> getList() {
     return list;
   }
 
+  public int getVertexCount() {
+    return points.size();
+  }
+
 }
@@ -0,0 +1,23 @@
+package com.sudoplay.tkalgo;
+
+/**
+ * Selects how vacant space inside the cell bounds is represented.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public enum FillMode {
+
+  /**
+   * Every vacant tile is a 1x1 filler cell.
+   */
+  TILES,
+
+  /**
+   * Vacant tiles are merged into rectangular {@link FillerRegion}s; only the
+   * tiles a corridor crosses become filler cells and only the regions they
+   * belong to are split.
+   */
+  RECTANGLES
+
+}
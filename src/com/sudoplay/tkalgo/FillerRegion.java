@@ -0,0 +1,90 @@
+package com.sudoplay.tkalgo;
+
+/**
+ * A rectangle of vacant filler tiles.
+ * <p>
+ * Unlike a {@link Cell}, which always spans an odd number of tiles around its
+ * center, a region can have any width and height. Right and top are
+ * exclusive.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class FillerRegion {
+
+  private final int left;
+  private final int bottom;
+  private final int width;
+  private final int height;
+
+  public FillerRegion(int left, int bottom, int width, int height) {
+    this.left = left;
+    this.bottom = bottom;
+    this.width = width;
+    this.height = height;
+  }
+
+  public int getLeft() {
+    return left;
+  }
+
+  public int getRight() {
+    return left + width;
+  }
+
+  public int getBottom() {
+    return bottom;
+  }
+
+  public int getTop() {
+    return bottom + height;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getArea() {
+    return width * height;
+  }
+
+  public boolean contains(int x, int y) {
+    return x >= left && x < left + width && y >= bottom && y < bottom + height;
+  }
+
+  @Override
+  public String toString() {
+    return "FillerRegion [left=" + left + ", bottom=" + bottom + ", width=" + width + ", height=" + height + "]";
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + left;
+    result = prime * result + bottom;
+    result = prime * result + width;
+    result = prime * result + height;
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null) {
+      return false;
+    }
+    if (getClass() != obj.getClass()) {
+      return false;
+    }
+    FillerRegion other = (FillerRegion) obj;
+    return left == other.left && bottom == other.bottom && width == other.width && height == other.height;
+  }
+
+}
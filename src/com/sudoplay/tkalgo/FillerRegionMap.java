@@ -0,0 +1,105 @@
+package com.sudoplay.tkalgo;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * Covers the vacant tiles of an {@link OccupancyGrid} with rectangular
+ * {@link FillerRegion}s and keeps a label per tile so the region under any
+ * tile can be found directly.
+ * <p>
+ * Carving marks the region under a tile as dirty; {@link #split()} then
+ * re-decomposes only the dirty regions from whatever is still vacant in the
+ * grid.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class FillerRegionMap {
+
+  private final OccupancyGrid grid;
+  private final int[] labels;
+  private final ArrayList<FillerRegion> regions = new ArrayList<FillerRegion>();
+  private final BitSet dirty = new BitSet();
+  private int count;
+
+  public FillerRegionMap(OccupancyGrid grid) {
+    this.grid = grid;
+    this.labels = new int[grid.getWidth() * grid.getHeight()];
+    ArrayList<FillerRegion> list = new ArrayList<FillerRegion>();
+    int x = grid.getLeft();
+    int y = grid.getBottom();
+    grid.getVacantRegions(x, y, x + grid.getWidth(), y + grid.getHeight(), list);
+    for (FillerRegion region : list) {
+      add(region);
+    }
+  }
+
+  private void add(FillerRegion region) {
+    int label = regions.size() + 1;
+    regions.add(region);
+    count++;
+    for (int y = region.getBottom(); y < region.getTop(); y++) {
+      int row = (y - grid.getBottom()) * grid.getWidth() - grid.getLeft();
+      for (int x = region.getLeft(); x < region.getRight(); x++) {
+        labels[row + x] = label;
+      }
+    }
+  }
+
+  /**
+   * Flags the region under the tile for splitting; tiles outside the grid or
+   * not under a region are ignored.
+   */
+  public void markCarved(int x, int y) {
+    x -= grid.getLeft();
+    y -= grid.getBottom();
+    if (x < 0 || x >= grid.getWidth() || y < 0 || y >= grid.getHeight()) {
+      return;
+    }
+    int label = labels[y * grid.getWidth() + x];
+    if (label > 0) {
+      dirty.set(label - 1);
+    }
+  }
+
+  /**
+   * Replaces every dirty region with regions covering its remaining vacant
+   * tiles.
+   */
+  public void split() {
+    ArrayList<FillerRegion> list = new ArrayList<FillerRegion>();
+    for (int i = dirty.nextSetBit(0); i >= 0; i = dirty.nextSetBit(i + 1)) {
+      FillerRegion region = regions.get(i);
+      if (region == null) {
+        continue;
+      }
+      regions.set(i, null);
+      count--;
+      list.clear();
+      grid.getVacantRegions(region.getLeft(), region.getBottom(), region.getRight(), region.getTop(), list);
+      for (FillerRegion r : list) {
+        add(r);
+      }
+    }
+    dirty.clear();
+  }
+
+  public int getRegionCount() {
+    return count;
+  }
+
+  /**
+   * Appends every live region to the given list.
+   */
+  public List<FillerRegion> getRegions(List<FillerRegion> store) {
+    for (FillerRegion region : regions) {
+      if (region != null) {
+        store.add(region);
+      }
+    }
+    return store;
+  }
+
+}
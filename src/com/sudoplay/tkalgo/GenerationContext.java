@@ -0,0 +1,84 @@
+package com.sudoplay.tkalgo;
+
+import java.util.ArrayList;
+
+import com.sudoplay.math.delaunay.DelaunayTriangulation;
+
+/**
+ * Working state for a single headless generation run.
+ * <p>
+ * Not thread safe; each run owns its own context.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+class GenerationContext {
+
+  final DungeonParameters parameters;
+  final long seed;
+  final XORShiftRandom rand;
+
+  final CellStore store = new CellStore();
+  final ArrayList<Cell> cells = new ArrayList<Cell>();
+  final ArrayList<Cell> masterCells = new ArrayList<Cell>();
+  final ArrayList<Cell> rooms = new ArrayList<Cell>();
+  final ArrayList<RoomConnection> connections = new ArrayList<RoomConnection>();
+  final ArrayList<RoomConnection> corridors = new ArrayList<RoomConnection>();
+  final ArrayList<EdgeList.Edge> minTree = new ArrayList<EdgeList.Edge>();
+  final ArrayList<EdgeList.Edge> discardEdge = new ArrayList<EdgeList.Edge>();
+
+  CellBounds bounds;
+  OccupancyGrid occupancy;
+  FillerRegionMap fillerRegions;
+  DelaunayTriangulation dt;
+  ArrayList<EdgeList.Edge> edgeList;
+  IntDisjointSet forest;
+
+  int cellCount;
+  int overlapPasses;
+  int separationCycles;
+  int fillerCount;
+  int edgeCount;
+  int discardedEdgeCount;
+  int loopCount;
+
+  final long[] stageNanos = new long[GenerationStage.values().length];
+
+  GenerationContext(DungeonParameters parameters, long seed) {
+    this.parameters = parameters;
+    this.seed = seed;
+    // zero would leave the xorshift state stuck, so generation never ends
+    this.rand = new XORShiftRandom(SplitMix64.nonZero(seed));
+  }
+
+  /**
+   * @return the counters as they stand, indexed by
+   *         {@link GenerationCounter#ordinal()}
+   */
+  long[] getCounters() {
+    long[] counters = new long[GenerationCounter.values().length];
+    counters[GenerationCounter.CELLS.ordinal()] = cellCount;
+    counters[GenerationCounter.OVERLAP_PASSES.ordinal()] = overlapPasses;
+    counters[GenerationCounter.SEPARATION_CYCLES.ordinal()] = separationCycles;
+    counters[GenerationCounter.FILLERS.ordinal()] = fillerCount;
+    counters[GenerationCounter.ROOMS.ordinal()] = rooms.size();
+    counters[GenerationCounter.EDGES.ordinal()] = edgeCount;
+    counters[GenerationCounter.DISCARDED_EDGES.ordinal()] = discardedEdgeCount;
+    counters[GenerationCounter.LOOPS.ordinal()] = loopCount;
+    counters[GenerationCounter.CORRIDORS.ordinal()] = corridors.size();
+    counters[GenerationCounter.INTERSECTED_CELLS.ordinal()] = masterCells.size();
+    return counters;
+  }
+
+  /**
+   * Records the time since start against the stage.
+   * 
+   * @return the current time, to start the next stage
+   */
+  long endStage(GenerationStage stage, long start) {
+    long now = System.nanoTime();
+    stageNanos[stage.ordinal()] = now - start;
+    return now;
+  }
+
+}
@@ -0,0 +1,57 @@
+package com.sudoplay.tkalgo;
+
+/**
+ * Counters reported with {@link StageMetrics}, as they stand when a stage
+ * completes.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public enum GenerationCounter {
+
+  /**
+   * Cells generated.
+   */
+  CELLS,
+
+  /**
+   * Separation passes until no cells overlap.
+   */
+  OVERLAP_PASSES,
+
+  /**
+   * Times minimum translation separation found its passes cycling; always
+   * zero for steering.
+   */
+  SEPARATION_CYCLES,
+
+  /**
+   * Vacant tiles inside the cell bounds after separation.
+   */
+  FILLERS,
+
+  ROOMS,
+
+  /**
+   * Distinct triangulation edges.
+   */
+  EDGES,
+
+  /**
+   * Triangulation edges left out of the spanning tree.
+   */
+  DISCARDED_EDGES,
+
+  /**
+   * Discarded edges added back as loops.
+   */
+  LOOPS,
+
+  CORRIDORS,
+
+  /**
+   * Cells touched by a corridor, including the rooms.
+   */
+  INTERSECTED_CELLS
+
+}
@@ -0,0 +1,19 @@
+package com.sudoplay.tkalgo;
+
+/**
+ * Receives metrics from a {@link DungeonGenerator}.
+ * <p>
+ * Called on the generating thread, between stages, and not counted in the
+ * stage times. A generator shared between threads calls its listeners
+ * concurrently.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public interface GenerationListener {
+
+  void stageCompleted(StageMetrics metrics);
+
+  void generationCompleted(Dungeon dungeon);
+
+}
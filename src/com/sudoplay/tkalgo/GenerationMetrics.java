@@ -0,0 +1,119 @@
+package com.sudoplay.tkalgo;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A {@link GenerationListener} that keeps latency histograms per stage and for
+ * whole runs, with allocation totals, across any number of runs and threads.
+ * <p>
+ * Export with {@link #writeCsv(Appendable)} to track percentiles over time.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class GenerationMetrics implements GenerationListener {
+
+  private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+
+  private final LatencyHistogram[] stages = new LatencyHistogram[GenerationStage.values().length];
+  private final LatencyHistogram total = new LatencyHistogram();
+  private final AtomicLongArray allocatedBytes = new AtomicLongArray(GenerationStage.values().length);
+
+  public GenerationMetrics() {
+    for (int i = 0; i < stages.length; i++) {
+      stages[i] = new LatencyHistogram();
+    }
+  }
+
+  @Override
+  public void stageCompleted(StageMetrics metrics) {
+    int i = metrics.getStage().ordinal();
+    stages[i].record(metrics.getWallNanos());
+    if (metrics.getAllocatedBytes() > 0) {
+      allocatedBytes.addAndGet(i, metrics.getAllocatedBytes());
+    }
+  }
+
+  @Override
+  public void generationCompleted(Dungeon dungeon) {
+    long nanos = 0;
+    for (GenerationStage stage : GenerationStage.values()) {
+      nanos += dungeon.getStageNanos(stage);
+    }
+    total.record(nanos);
+  }
+
+  public LatencyHistogram getHistogram(GenerationStage stage) {
+    return stages[stage.ordinal()];
+  }
+
+  /**
+   * @return the histogram of whole runs, the sum of their stage times
+   */
+  public LatencyHistogram getTotalHistogram() {
+    return total;
+  }
+
+  /**
+   * @return bytes allocated in the stage summed over every run, or 0 if the
+   *         JVM cannot measure it
+   */
+  public long getAllocatedBytes(GenerationStage stage) {
+    return allocatedBytes.get(stage.ordinal());
+  }
+
+  public void reset() {
+    for (int i = 0; i < stages.length; i++) {
+      stages[i].reset();
+      allocatedBytes.set(i, 0);
+    }
+    total.reset();
+  }
+
+  /**
+   * Writes one line per stage and one for whole runs. Times are in
+   * microseconds.
+   */
+  public void writeCsv(Appendable out) throws IOException {
+    out.append("stage,count,mean_us");
+    for (double p : PERCENTILES) {
+      out.append(",p").append(formatPercentile(p)).append("_us");
+    }
+    out.append(",max_us,allocated_bytes\n");
+    for (GenerationStage stage : GenerationStage.values()) {
+      writeRow(out, stage.name(), stages[stage.ordinal()], allocatedBytes.get(stage.ordinal()));
+    }
+    long allocated = 0;
+    for (int i = 0; i < stages.length; i++) {
+      allocated += allocatedBytes.get(i);
+    }
+    writeRow(out, "TOTAL", total, allocated);
+  }
+
+  private static void writeRow(Appendable out, String name, LatencyHistogram h, long allocated) throws IOException {
+    out.append(name).append(',').append(Long.toString(h.getCount()));
+    out.append(',').append(String.format("%.1f", h.getMean() / 1000));
+    for (double p : PERCENTILES) {
+      out.append(',').append(String.format("%.1f", h.getPercentile(p) / 1000.0));
+    }
+    out.append(',').append(String.format("%.1f", h.getMax() / 1000.0));
+    out.append(',').append(Long.toString(allocated)).append('\n');
+  }
+
+  private static String formatPercentile(double p) {
+    return p == Math.rint(p) ? Long.toString((long) p) : Double.toString(p).replace('.', '_');
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    try {
+      writeCsv(sb);
+    } catch (IOException e) {
+      // StringBuilder does not throw
+    }
+    return sb.toString();
+  }
+
+}
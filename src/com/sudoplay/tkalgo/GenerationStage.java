@@ -0,0 +1,13 @@
+package com.sudoplay.tkalgo;
+
+/**
+ * The stages of a generation run, in the order they execute.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public enum GenerationStage {
+
+  GENERATE, SEPARATE, FILL, SELECT, TRIANGULATE, MINSPAN, LOOPS, CONNECTION, INTERSECTION
+
+}
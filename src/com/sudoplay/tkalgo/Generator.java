@@ -27,10 +27,10 @@ public class Generator {
 
     Cell cell = new Cell();
 
-    while (cell.center.getDistanceSquared(center) > rSqr) {
+    do {
       cell.center.x = rand.nextInt(rangex) + minx;
       cell.center.y = rand.nextInt(rangey) + miny;
-    }
+    } while (cell.center.getDistanceSquared(center) > rSqr);
 
     float cRatio = (float) (1.0f - nextClampedGaussian(rand) * 0.33f);
     float cSize = (float) (nextClampedGaussian(rand) * (size.y - size.x + 1) + size.x);
@@ -53,10 +53,70 @@ public class Generator {
       cell.size.y = size.x;
     }
 
+    cell.id = cells.size();
     cells.add(cell);
 
   }
 
+  /**
+   * Same as {@link #generateCell(Random, Vector2i, Vector2i, int, ArrayList)},
+   * drawing the same random sequence, but writes into a cell store.
+   * 
+   * @return the index of the new cell
+   */
+  public static int generateCell(Random rand, Vector2i size, Vector2i center, int radius, CellStore store) {
+    int index = store.add(0, 0, 0, 0, Cell.TYPE_NONE);
+    generateCell(rand, size, center, radius, store, index);
+    return index;
+  }
+
+  /**
+   * Generates a cell into an existing index of the store. Writes nothing else,
+   * so different indices may be generated concurrently.
+   */
+  public static void generateCell(Random rand, Vector2i size, Vector2i center, int radius, CellStore store, int index) {
+
+    int rSqr = radius * radius;
+
+    int minx = center.x - radius;
+    int maxx = center.x + radius;
+    int miny = center.y - radius;
+    int maxy = center.y + radius;
+
+    int rangex = maxx - minx;
+    int rangey = maxy - miny;
+
+    int x, y, dx, dy, cx, cy;
+
+    do {
+      x = rand.nextInt(rangex) + minx;
+      y = rand.nextInt(rangey) + miny;
+      dx = x - center.x;
+      dy = y - center.y;
+    } while (dx * dx + dy * dy > rSqr);
+
+    float cRatio = (float) (1.0f - nextClampedGaussian(rand) * 0.33f);
+    float cSize = (float) (nextClampedGaussian(rand) * (size.y - size.x + 1) + size.x);
+
+    if (rand.nextBoolean()) {
+      cx = (int) cSize;
+      cy = (int) (cSize * cRatio);
+    } else {
+      cx = (int) (cSize * cRatio);
+      cy = (int) cSize;
+    }
+
+    if (cx <= 0) {
+      cx = size.x;
+    }
+    if (cy <= 0) {
+      cy = size.x;
+    }
+
+    store.set(index, x, y, cx, cy, Cell.TYPE_NONE);
+
+  }
+
   public static void moveCells(Random rand, ArrayList<Cell> cells) {
 
     Cell cell;
@@ -77,9 +137,39 @@ public class Generator {
 
   }
 
-  private static void moveCell(Random rand, Cell c1, Cell c2, Vector2i v) {
+  static void moveCell(Random rand, Cell c1, Cell c2, Vector2i v) {
     int dx = FastMath.clamp(c1.center.x - c2.center.x, -1, 1);
     int dy = FastMath.clamp(c1.center.y - c2.center.y, -1, 1);
+    addMove(rand, dx, dy, v);
+  }
+
+  public static void moveCells(Random rand, CellStore store) {
+
+    int[] centerX = store.centerX;
+    int[] centerY = store.centerY;
+    Vector2i v = new Vector2i();
+    for (int i = 0; i < store.size; i++) {
+      v.set(0, 0);
+      for (int j = 0; j < store.size; j++) {
+        if (i == j)
+          continue;
+        if (isOverlap(store, i, j)) {
+          moveCell(rand, store, i, j, v);
+        }
+      }
+      centerX[i] += v.x;
+      centerY[i] += v.y;
+    }
+
+  }
+
+  static void moveCell(Random rand, CellStore store, int i, int j, Vector2i v) {
+    int dx = FastMath.clamp(store.centerX[i] - store.centerX[j], -1, 1);
+    int dy = FastMath.clamp(store.centerY[i] - store.centerY[j], -1, 1);
+    addMove(rand, dx, dy, v);
+  }
+
+  private static void addMove(Random rand, int dx, int dy, Vector2i v) {
     if (dx == 0 && dy == 0) {
       switch (rand.nextInt(4)) {
       case 0:
@@ -120,6 +210,36 @@ public class Generator {
     return false;
   }
 
+  public static boolean isAnyOverlap(CellStore store) {
+    int[] type = store.type;
+    for (int i = 0; i < store.size; i++) {
+      for (int j = 0; j < store.size; j++) {
+        if (i == j)
+          continue;
+        if (isOverlap(store, i, j)) {
+          type[i] = Cell.TYPE_OVERLAP;
+          type[j] = Cell.TYPE_OVERLAP;
+          return true;
+        } else {
+          type[i] = Cell.TYPE_NONE;
+          type[j] = Cell.TYPE_NONE;
+        }
+      }
+    }
+    return false;
+  }
+
+  public static boolean isOverlap(CellStore store, int i, int j) {
+    int[] cx = store.centerX;
+    int[] cy = store.centerY;
+    int[] sx = store.sizeX;
+    int[] sy = store.sizeY;
+    // |dx| < sx1 + sx2 + 1 is the same test as the left and right edge checks
+    int dx = cx[i] - cx[j];
+    int dy = cy[i] - cy[j];
+    return (dx < 0 ? -dx : dx) <= sx[i] + sx[j] && (dy < 0 ? -dy : dy) <= sy[i] + sy[j];
+  }
+
   public static boolean isOverlap(Cell c1, Cell c2) {
     if (c1.getLeft() < c2.getRight() && c1.getRight() > c2.getLeft() && c1.getBottom() < c2.getTop() && c1.getTop() > c2.getBottom()) {
       return true;
@@ -132,6 +252,28 @@ public class Generator {
     return CellBounds.get(cells);
   }
 
+  public static CellBounds getBounds(CellStore store) {
+    return CellBounds.get(store);
+  }
+
+  /**
+   * @return the index of the first cell containing the point, or -1
+   */
+  public static int getCell(int x, int y, CellStore store) {
+    for (int i = 0; i < store.size; i++) {
+      if (isPointInCell(x, y, store, i)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  public static boolean isPointInCell(int x, int y, CellStore store, int i) {
+    int dx = x - store.centerX[i];
+    int dy = y - store.centerY[i];
+    return (dx < 0 ? -dx : dx) <= store.sizeX[i] && (dy < 0 ? -dy : dy) <= store.sizeY[i];
+  }
+
   public static Cell getCell(Vector2i v, ArrayList<Cell> cells) {
     for (Cell cell : cells) {
       if (isPointInCell(v, cell)) {
@@ -183,7 +325,48 @@ public class Generator {
     return store;
   }
 
+  /**
+   * Same as {@link #getIntersectingCells(Vector2i, Vector2i, ArrayList, ArrayList, int)}
+   * but checks for duplicates against an id set kept alongside the store
+   * instead of scanning the store. Cells added to the store are added to the
+   * set.
+   */
+  public static ArrayList<Cell> getIntersectingCells(Vector2i p1, Vector2i p2, ArrayList<Cell> cells, ArrayList<Cell> store, CellSet members, int extraWidth) {
+    if (store == null) {
+      store = new ArrayList<Cell>();
+    }
+    Vector2i v = new Vector2i();
+    int x1, y1, x2, y2;
+    if (p1.x == p2.x) {
+      y1 = Math.min(p1.y, p2.y) - extraWidth;
+      y2 = Math.max(p1.y, p2.y) + extraWidth;
+      for (int x = p1.x - extraWidth; x <= p1.x + extraWidth; x++) {
+        for (int y = y1; y <= y2; y++) {
+          Cell cell = Generator.getCell(v.set(x, y), cells);
+          if (cell != null && members.add(cell)) {
+            store.add(cell);
+          }
+        }
+      }
+    } else if (p1.y == p2.y) {
+      x1 = Math.min(p1.x, p2.x) - extraWidth;
+      x2 = Math.max(p1.x, p2.x) + extraWidth;
+      for (int y = p1.y - extraWidth; y <= p1.y + extraWidth; y++) {
+        for (int x = x1; x <= x2; x++) {
+          Cell cell = Generator.getCell(v.set(x, y), cells);
+          if (cell != null && members.add(cell)) {
+            store.add(cell);
+          }
+        }
+      }
+    }
+    return store;
+  }
+
   public static double nextClampedGaussian(Random rand) {
+    if (rand instanceof XORShiftRandom) {
+      return ((XORShiftRandom) rand).nextHalfGaussian(MAX_GAUSS) / MAX_GAUSS;
+    }
     double g = rand.nextGaussian();
     g = g < 0 ? -g : g;
     g /= MAX_GAUSS;
@@ -0,0 +1,75 @@
+package com.sudoplay.tkalgo;
+
+/**
+ * Disjoint-set forest over the integers <code>0..size-1</code>, stored in
+ * flat arrays.
+ * <p>
+ * Uses union by rank and path halving, so a sequence of operations runs in
+ * near-linear time without recursion or a node object per element.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class IntDisjointSet {
+
+  private final int[] parent;
+  private final byte[] rank;
+  private int setCount;
+
+  public IntDisjointSet(int size) {
+    parent = new int[size];
+    rank = new byte[size];
+    for (int i = 0; i < size; i++) {
+      parent[i] = i;
+    }
+    setCount = size;
+  }
+
+  public int size() {
+    return parent.length;
+  }
+
+  /**
+   * @return the number of disjoint sets
+   */
+  public int getSetCount() {
+    return setCount;
+  }
+
+  /**
+   * @return the representative of the set containing x
+   */
+  public int findSet(int x) {
+    while (parent[x] != x) {
+      parent[x] = parent[parent[x]];
+      x = parent[x];
+    }
+    return x;
+  }
+
+  public boolean isSameSet(int x, int y) {
+    return findSet(x) == findSet(y);
+  }
+
+  /**
+   * @return false if x and y were already in the same set
+   */
+  public boolean union(int x, int y) {
+    x = findSet(x);
+    y = findSet(y);
+    if (x == y) {
+      return false;
+    }
+    if (rank[x] > rank[y]) {
+      parent[y] = x;
+    } else {
+      parent[x] = y;
+      if (rank[x] == rank[y]) {
+        rank[y]++;
+      }
+    }
+    setCount--;
+    return true;
+  }
+
+}
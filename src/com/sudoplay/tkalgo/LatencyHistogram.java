@@ -0,0 +1,106 @@
+package com.sudoplay.tkalgo;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Log-linear histogram of nanosecond latencies.
+ * <p>
+ * Values below 32 get a bucket each; above that every power of two is split
+ * into 32 buckets, so a reported percentile is within about 3% of the
+ * recorded value. Recording is lock-free and may happen from any thread.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class LatencyHistogram {
+
+  private static final int SUB_BITS = 5;
+  private static final int SUB_COUNT = 1 << SUB_BITS;
+  private static final int BUCKETS = SUB_COUNT + (63 - SUB_BITS) * SUB_COUNT;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong();
+
+  public void record(long nanos) {
+    if (nanos < 0) {
+      nanos = 0;
+    }
+    buckets.incrementAndGet(getBucket(nanos));
+    count.incrementAndGet();
+    sum.addAndGet(nanos);
+    long m;
+    while (nanos > (m = max.get()) && !max.compareAndSet(m, nanos)) {
+      //
+    }
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+
+  public long getMax() {
+    return max.get();
+  }
+
+  public double getMean() {
+    long n = count.get();
+    return n > 0 ? sum.get() / (double) n : 0;
+  }
+
+  /**
+   * @param percentile
+   *          in [0, 100]
+   * @return the upper bound of the bucket holding the percentile, capped at
+   *         the maximum, or 0 if nothing was recorded
+   */
+  public long getPercentile(double percentile) {
+    long n = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      n += buckets.get(i);
+    }
+    if (n == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(percentile / 100 * n);
+    rank = Math.max(1, Math.min(n, rank));
+    long seen = 0;
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += buckets.get(i);
+      if (seen >= rank) {
+        return Math.min(getUpperBound(i), max.get());
+      }
+    }
+    return max.get();
+  }
+
+  public void reset() {
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets.set(i, 0);
+    }
+    count.set(0);
+    sum.set(0);
+    max.set(0);
+  }
+
+  static int getBucket(long value) {
+    if (value < SUB_COUNT) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int shift = exponent - SUB_BITS;
+    return SUB_COUNT + shift * SUB_COUNT + (int) ((value >>> shift) & (SUB_COUNT - 1));
+  }
+
+  static long getUpperBound(int bucket) {
+    if (bucket < SUB_COUNT) {
+      return bucket;
+    }
+    int shift = (bucket - SUB_COUNT) / SUB_COUNT;
+    long mantissa = SUB_COUNT + (bucket - SUB_COUNT) % SUB_COUNT;
+    return (mantissa << shift) + (1L << shift) - 1;
+  }
+
+}
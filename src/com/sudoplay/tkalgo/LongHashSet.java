@@ -0,0 +1,100 @@
+package com.sudoplay.tkalgo;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing set of primitive longs with linear probing.
+ * <p>
+ * {@link Long#MIN_VALUE} marks an empty slot and cannot be stored. Not thread
+ * safe.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class LongHashSet {
+
+  private static final long EMPTY = Long.MIN_VALUE;
+
+  private long[] keys;
+  private int mask;
+  private int size;
+
+  public LongHashSet() {
+    this(16);
+  }
+
+  public LongHashSet(int expected) {
+    int capacity = Integer.highestOneBit(Math.max(expected * 2 - 1, 15)) << 1;
+    keys = new long[capacity];
+    Arrays.fill(keys, EMPTY);
+    mask = capacity - 1;
+  }
+
+  /**
+   * @return true if the key was not already in the set
+   */
+  public boolean add(long key) {
+    if (key == EMPTY) {
+      throw new IllegalArgumentException("Key reserved for empty slots: " + key);
+    }
+    int i = hash(key) & mask;
+    while (keys[i] != EMPTY) {
+      if (keys[i] == key) {
+        return false;
+      }
+      i = (i + 1) & mask;
+    }
+    keys[i] = key;
+    if (++size > (keys.length >> 1)) {
+      grow();
+    }
+    return true;
+  }
+
+  public boolean contains(long key) {
+    int i = hash(key) & mask;
+    while (keys[i] != EMPTY) {
+      if (keys[i] == key) {
+        return true;
+      }
+      i = (i + 1) & mask;
+    }
+    return false;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  public void clear() {
+    Arrays.fill(keys, EMPTY);
+    size = 0;
+  }
+
+  private void grow() {
+    long[] old = keys;
+    keys = new long[old.length << 1];
+    Arrays.fill(keys, EMPTY);
+    mask = keys.length - 1;
+    for (long key : old) {
+      if (key != EMPTY) {
+        int i = hash(key) & mask;
+        while (keys[i] != EMPTY) {
+          i = (i + 1) & mask;
+        }
+        keys[i] = key;
+      }
+    }
+  }
+
+  private static int hash(long key) {
+    // murmur3 finalizer
+    key ^= key >>> 33;
+    key *= 0xff51afd7ed558ccdL;
+    key ^= key >>> 33;
+    key *= 0xc4ceb9fe1a85ec53L;
+    key ^= key >>> 33;
+    return (int) key;
+  }
+
+}
@@ -1,12 +1,16 @@
 package com.sudoplay.tkalgo;
 
 import java.awt.Dimension;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
 import java.awt.event.MouseEvent;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Random;
+import java.util.concurrent.Semaphore;
 
 import javax.swing.JFrame;
+import javax.swing.Timer;
 
 import com.sudoplay.math.Vector2i;
 import com.sudoplay.math.delaunay.DT_Point;
@@ -19,8 +23,14 @@ public class Main {
     INIT, READY, NONE, GENERATE, SEPARATE, SELECT, TRIANGULATE, MINSPAN, LOOPS, FILL, CONNECTION, INTERSECTION, FINAL
   }
 
-  private State state = State.INIT;
-  private boolean ready = true;
+  private static final int FRAME_MILLIS = 16;
+  private static final int SNAPSHOT_CAPACITY = 8;
+
+  private StageScheduler<State> scheduler;
+  private final Semaphore clicks = new Semaphore(0);
+  private final SnapshotRing<DisplaySnapshot> snapshots = new SnapshotRing<DisplaySnapshot>(SNAPSHOT_CAPACITY);
+  private long runCount;
+  private long lastPublished;
 
   private static boolean continuous = true;
   private static boolean sleep = true;
@@ -40,7 +50,7 @@ public class Main {
   private CellBounds bounds;
   private ArrayList<Cell> rooms = new ArrayList<Cell>();
   private ArrayList<EdgeList.Edge> discardEdge = new ArrayList<EdgeList.Edge>();
-  private DisjointSetForest<DT_Point> forest;
+  private IntDisjointSet forest;
   private ArrayList<EdgeList.Edge> edgeList;
 
   private int roomMin = 4;
@@ -51,14 +61,67 @@ public class Main {
   private int radius = 16;
   private Vector2i cellSize = new Vector2i(1, 12);
   private float loopPercentage = 0.15f;
+  private OverlapEngine overlapEngine = OverlapMode.BRUTE_FORCE.createEngine();
 
   public static void main(String[] args) {
     Main app = new Main();
     app.setup();
-    app.run(State.INIT);
+    app.start();
+  }
+
+  /**
+   * Schedules the states from INIT to FINAL as a loop. Each stage returns when
+   * its state is done, so continuous mode can cycle forever without growing
+   * the stack.
+   */
+  private StageScheduler<State> createScheduler() {
+    StageScheduler<State> s = new StageScheduler<State>(true);
+    State[] order = { State.INIT, State.GENERATE, State.SEPARATE, State.FILL, State.SELECT, State.TRIANGULATE,
+        State.MINSPAN, State.LOOPS, State.CONNECTION, State.INTERSECTION, State.FINAL };
+    for (final State state : order) {
+      s.add(state, new Stage() {
+        @Override
+        public void run() {
+          Main.this.run(state);
+        }
+      });
+    }
+    s.addHook(new StageHook<State>() {
+      @Override
+      public void beforeStage(State key, long cycle) {
+        out(key.toString());
+      }
+
+      @Override
+      public void afterStage(State key, long cycle, long nanos) {
+        //
+      }
+    });
+    return s;
+  }
+
+  /**
+   * In continuous mode runs the pipeline until the process exits, otherwise
+   * runs INIT and then a state per mouse click. Either way the stages run on
+   * the calling thread, never on the event dispatch thread, and clicks made
+   * while a state runs are ignored.
+   */
+  private void start() {
+    if (continuous) {
+      scheduler.runToCompletion();
+    } else {
+      scheduler.step();
+      while (!scheduler.isComplete()) {
+        clicks.acquireUninterruptibly();
+        scheduler.step();
+        clicks.drainPermits();
+      }
+    }
   }
 
   private void setup() {
+    scheduler = createScheduler();
+
     JFrame frame = new JFrame();
     frame.setPreferredSize(new Dimension(displaySize.x, displaySize.y));
 
@@ -69,22 +132,30 @@ public class Main {
       frame.addMouseListener(new MouseClickListener() {
         @Override
         protected void onClick(MouseEvent e) {
-          nextState();
+          clicks.release();
         }
       });
     }
 
     frame.add(displayPanel);
 
-    displayPanel.setCells(cells);
-    displayPanel.setFillerCells(fillerCells);
-    displayPanel.setMasterCells(masterCells);
-    displayPanel.setOutText(outputText);
-    displayPanel.setConnections(connections);
-    displayPanel.setMinTree(minTree);
-
     displayPanel.setDisplayGrid(displayGrid);
 
+    /*
+     * Draw the latest snapshot at a fixed frame rate; snapshots published
+     * between two frames are never drawn
+     */
+    new Timer(FRAME_MILLIS, new ActionListener() {
+      @Override
+      public void actionPerformed(ActionEvent e) {
+        DisplaySnapshot snapshot = snapshots.getLatest();
+        if (snapshot != null && snapshot != displayPanel.getSnapshot()) {
+          displayPanel.setSnapshot(snapshot);
+          displayPanel.repaint();
+        }
+      }
+    }).start();
+
     frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
     frame.pack();
     frame.setVisible(true);
@@ -93,8 +164,6 @@ public class Main {
 
   private void run(State state) {
 
-    out(state.toString());
-
     /*
      * Temp vars
      */
@@ -114,19 +183,15 @@ public class Main {
       minTree.clear();
       rooms.clear();
       discardEdge.clear();
-      forest = new DisjointSetForest<DT_Point>();
 
       bounds = null;
+      dt = null;
+      runCount++;
       out(state.toString());
       out("   Cleared");
       rand = getRandom();
-      repaint(State.INIT);
-      ready = true;
-      if (continuous) {
-        nextState();
-      } else {
-        break;
-      }
+      publish(State.INIT);
+      break;
 
     case GENERATE:
       /*
@@ -138,16 +203,11 @@ public class Main {
       for (int i = 0; i < cellCount; i++) {
         sleep(10);
         Generator.generateCell(rand, cellSize, areaCenter, radius, cells);
-        repaint(State.GENERATE);
+        publish(State.GENERATE);
       }
       out("   Cells generated: " + cells.size());
-      repaint(State.GENERATE);
-      ready = true;
-      if (continuous) {
-        nextState();
-      } else {
-        break;
-      }
+      publish(State.GENERATE);
+      break;
 
     case SEPARATE:
       /*
@@ -155,20 +215,18 @@ public class Main {
        */
       out("   Separating overlapping cells...");
       int overlap = 0;
-      while (Generator.isAnyOverlap(cells)) {
+      CellStore store = new CellStore(cells);
+      while (overlapEngine.isAnyOverlap(store)) {
         sleep(30);
-        Generator.moveCells(rand, cells);
-        repaint(State.SEPARATE);
+        overlapEngine.moveCells(rand, store);
+        store.copyTo(cells);
+        publish(State.SEPARATE);
         overlap++;
       }
+      store.copyTo(cells);
       out("   Overlap passes: " + overlap);
-      repaint(State.SEPARATE);
-      ready = true;
-      if (continuous) {
-        nextState();
-      } else {
-        break;
-      }
+      publish(State.SEPARATE);
+      break;
 
     case FILL:
       /*
@@ -176,29 +234,26 @@ public class Main {
        */
       out("   Filling empty space...");
       bounds = CellBounds.get(cells);
-      displayPanel.setCellBounds(bounds);
       out("   " + bounds.toString());
+      OccupancyGrid occupancy = new OccupancyGrid(bounds);
+      occupancy.stamp(new CellStore(cells));
       for (int x = bounds.getLeft(); x < bounds.getRight(); x++) {
         for (int y = bounds.getBottom(); y < bounds.getTop(); y++) {
-          if (Generator.getCell(v.set(x, y), cells) == null) {
+          if (occupancy.isVacant(x, y)) {
             Cell cell = new Cell();
             cell.center.set(x, y);
             cell.type = Cell.TYPE_FILL;
+            cell.id = cells.size() + occupancy.getTileIndex(x, y);
             fillerCells.add(cell);
             if (fillerCells.size() % 250 == 0)
-              repaint(State.FILL);
+              publish(State.FILL);
           }
         }
       }
       out("   Filler cells: " + fillerCells.size());
       out("   Total cells: " + (fillerCells.size() + cells.size()));
-      repaint(State.FILL);
-      ready = true;
-      if (continuous) {
-        nextState();
-      } else {
-        break;
-      }
+      publish(State.FILL);
+      break;
 
     case SELECT:
       /*
@@ -209,7 +264,7 @@ public class Main {
         if (cell.getArea() > roomArea) {
           rooms.add(cell);
           cell.type = Cell.TYPE_ROOM;
-          repaint(State.SELECT);
+          publish(State.SELECT);
           sleep(40);
         }
       }
@@ -221,7 +276,7 @@ public class Main {
       if (rooms.size() < roomMin) {
         ArrayList<Cell> list = new ArrayList<Cell>(cells);
         if (!rooms.isEmpty()) {
-          list.removeAll(rooms);
+          CellSet.removeAll(list, new CellSet(rooms));
         }
         Collections.sort(list, new CellAreaSorter());
         int augment = 0;
@@ -236,13 +291,8 @@ public class Main {
       } else {
         out("   No extra rooms added");
       }
-      repaint(State.SELECT);
-      ready = true;
-      if (continuous) {
-        nextState();
-      } else {
-        break;
-      }
+      publish(State.SELECT);
+      break;
 
     case TRIANGULATE:
       /*
@@ -250,25 +300,21 @@ public class Main {
        */
       out("   Generating DT...");
       dt = new DelaunayTriangulation();
-      displayPanel.setDT(dt);
       for (Cell room : rooms) {
         dt.insertPoint(new DT_Point(room.center.x, room.center.y));
-        repaint(State.TRIANGULATE);
+        publish(State.TRIANGULATE);
         sleep(50);
       }
       /*
        * Generate a list of edges using a disjoint-set forest. List is sorted by
        * edge length, increasing.
        */
-      edgeList = new EdgeList(dt, forest).getList();
+      EdgeList edges = new EdgeList(dt);
+      edgeList = edges.getList();
+      forest = new IntDisjointSet(edges.getVertexCount());
       out("   Edges: " + edgeList.size());
-      repaint(State.TRIANGULATE);
-      ready = true;
-      if (continuous) {
-        nextState();
-      } else {
-        break;
-      }
+      publish(State.TRIANGULATE);
+      break;
 
     case MINSPAN:
       /*
@@ -277,10 +323,9 @@ public class Main {
       out("   Generating min-span tree...");
       while (edgeList.size() > 0) {
         EdgeList.Edge edge = edgeList.remove(edgeList.size() - 1);
-        if (!forest.findSet(edge.getN1()).equals(forest.findSet(edge.getN2()))) {
+        if (forest.union(edge.getV1(), edge.getV2())) {
           minTree.add(edge);
-          forest.union(edge.getN1(), edge.getN2());
-          repaint(State.MINSPAN);
+          publish(State.MINSPAN);
           sleep(50);
         } else {
           discardEdge.add(edge);
@@ -288,13 +333,8 @@ public class Main {
       }
       out("   Edges: " + minTree.size());
       out("   Discarded edges: " + discardEdge.size());
-      repaint(State.MINSPAN);
-      ready = true;
-      if (continuous) {
-        nextState();
-      } else {
-        break;
-      }
+      publish(State.MINSPAN);
+      break;
 
     case LOOPS:
       /*
@@ -305,24 +345,19 @@ public class Main {
       minTree.add(discardEdge.remove(discardEdge.size() - 1));
       loopsToAdd--;
       loopsAdded++;
-      repaint(State.LOOPS);
+      publish(State.LOOPS);
       sleep(50);
       Collections.shuffle(discardEdge, rand);
       while (loopsToAdd > 0) {
         minTree.add(discardEdge.remove(discardEdge.size() - 1));
         loopsToAdd--;
         loopsAdded++;
-        repaint(State.LOOPS);
+        publish(State.LOOPS);
         sleep(50);
       }
       out("   Loop edges added: " + loopsAdded);
-      repaint(State.LOOPS);
-      ready = true;
-      if (continuous) {
-        nextState();
-      } else {
-        break;
-      }
+      publish(State.LOOPS);
+      break;
 
     case CONNECTION:
       /*
@@ -350,18 +385,13 @@ public class Main {
           elbow++;
         }
         sleep(50);
-        repaint(State.CONNECTION);
+        publish(State.CONNECTION);
       }
       out("   Straight connections: " + straight);
       out("   L connections: " + elbow);
       out("   Total connections: " + connections.size());
-      repaint(State.CONNECTION);
-      ready = true;
-      if (continuous) {
-        nextState();
-      } else {
-        break;
-      }
+      publish(State.CONNECTION);
+      break;
 
     case INTERSECTION:
       /*
@@ -369,62 +399,60 @@ public class Main {
        */
       out("   Testing intersection...");
       ArrayList<Cell> intersecting = new ArrayList<Cell>();
+      CellSet members = new CellSet();
       while (connections.size() > 0) {
         int extraWidth = 1;
         RoomConnection con = connections.remove(connections.size() - 1);
         ArrayList<Vector2i> p = con.getPoints();
-        Generator.getIntersectingCells(p.get(0), p.get(1), cells, intersecting, extraWidth);
-        Generator.getIntersectingCells(p.get(0), p.get(1), fillerCells, intersecting, extraWidth);
+        intersecting.clear();
+        members.clear();
+        Generator.getIntersectingCells(p.get(0), p.get(1), cells, intersecting, members, extraWidth);
+        Generator.getIntersectingCells(p.get(0), p.get(1), fillerCells, intersecting, members, extraWidth);
         if (p.size() == 3) {
-          Generator.getIntersectingCells(p.get(1), p.get(2), cells, intersecting, extraWidth);
-          Generator.getIntersectingCells(p.get(1), p.get(2), fillerCells, intersecting, extraWidth);
+          Generator.getIntersectingCells(p.get(1), p.get(2), cells, intersecting, members, extraWidth);
+          Generator.getIntersectingCells(p.get(1), p.get(2), fillerCells, intersecting, members, extraWidth);
         }
-        cells.removeAll(intersecting);
-        fillerCells.removeAll(intersecting);
+        CellSet.removeAll(cells, members);
+        CellSet.removeAll(fillerCells, members);
         masterCells.addAll(intersecting);
         sleep(50);
-        repaint(State.INTERSECTION);
+        publish(State.INTERSECTION);
       }
       out("   Intersected cells: " + masterCells.size());
-      repaint(State.INTERSECTION);
-      ready = true;
-      if (continuous) {
-        nextState();
-      } else {
-        break;
-      }
+      publish(State.INTERSECTION);
+      break;
 
     case FINAL:
       /*
        * Final display
        */
-      repaint(State.FINAL);
-      ready = true;
+      publish(State.FINAL);
       if (continuous) {
         try {
           Thread.sleep(2000);
         } catch (InterruptedException e) {
           e.printStackTrace();
         }
-        nextState();
-      } else {
-        break;
       }
+      break;
 
     default:
-      if (continuous) {
-        nextState();
-      } else {
-        break;
-      }
+      break;
     }
 
   }
 
-  private void repaint(State state) {
-    if (sleep || state == State.FINAL || state == State.INIT) {
-      displayPanel.setState(state);
-      displayPanel.paintImmediately(0, 0, displaySize.x, displaySize.y);
+  /**
+   * Publishes a snapshot for the display to pick up; never waits for it to be
+   * drawn. Without sleeps, snapshots are only made once per frame, as more
+   * could never be drawn.
+   */
+  private void publish(State state) {
+    long now = System.nanoTime();
+    if (sleep || state == State.FINAL || state == State.INIT || now - lastPublished >= FRAME_MILLIS * 1000000L) {
+      snapshots.publish(new DisplaySnapshot(runCount, state, cells, fillerCells, masterCells, bounds, dt, minTree,
+          connections, outputText));
+      lastPublished = now;
     }
   }
 
@@ -450,48 +478,4 @@ public class Main {
     return new XORShiftRandom(seed);
   }
 
-  private void nextState() {
-    if (ready) {
-      ready = false;
-      switch (state) {
-      case INIT:
-        state = State.GENERATE;
-        break;
-      case GENERATE:
-        state = State.SEPARATE;
-        break;
-      case SEPARATE:
-        state = State.FILL;
-        break;
-      case FILL:
-        state = State.SELECT;
-        break;
-      case SELECT:
-        state = State.TRIANGULATE;
-        break;
-      case TRIANGULATE:
-        state = State.MINSPAN;
-        break;
-      case MINSPAN:
-        state = State.LOOPS;
-        break;
-      case LOOPS:
-        state = State.CONNECTION;
-        break;
-      case CONNECTION:
-        state = State.INTERSECTION;
-        break;
-      case INTERSECTION:
-        state = State.FINAL;
-        break;
-      case FINAL:
-        state = State.INIT;
-        break;
-      default:
-        break;
-      }
-      run(state);
-    }
-  }
-
 }
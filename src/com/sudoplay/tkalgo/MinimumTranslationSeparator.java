@@ -0,0 +1,601 @@
+package com.sudoplay.tkalgo;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Separates cells by pushing each overlapping pair apart along its minimum
+ * translation vector, for {@link SeparationMode#MINIMUM_TRANSLATION} and
+ * {@link SeparationMode#PARALLEL_MINIMUM_TRANSLATION}.
+ * <p>
+ * Pairwise pushes only spread a dense cluster by about a cell per pass, so the
+ * centers are first scaled away from the centroid until the cluster covers
+ * the area its cells need at {@link #PACKING} density. Each pass then finds
+ * the overlapping pairs with a sweep over the cells sorted by left edge, pushes
+ * both cells of a pair apart by half its penetration along the shallower axis,
+ * scaled by the damping and rounded up, and moves every cell by its summed
+ * push. All pushes are computed from the positions at the start of the pass.
+ * <p>
+ * Damping starts above one, which over-relaxes and converges in fewer passes.
+ * Positions are hashed after every pass; if a layout repeats one of the last
+ * few, the passes are cycling, so the damping is halved and from then on the
+ * higher index cell of a pair takes the whole push, which breaks the symmetry
+ * that keeps a cluster oscillating.
+ * <p>
+ * If cells still overlap after {@link #MAX_PASSES}, every center is moved
+ * twice as far from the centroid per pass until none do. Cells with distinct
+ * centers drift apart under doubling, and cells sharing a center are offset
+ * into distinct odd positions first, so this always terminates.
+ * <p>
+ * Given a pool, each pass instead buckets the cells into a uniform grid and
+ * sums the pushes on the threads of the pool, each cell summing its own pushes
+ * from the cells sharing a bucket with it, so no two threads write the same
+ * entry. Positions are only read during the sum, so threads read across
+ * bucket borders freely. The sums are the same integers either way, so the
+ * result is the same as without a pool, for any number of threads.
+ * <p>
+ * Uses no random numbers: the result depends only on the cells, so it is the
+ * same for a seed on every run. Not thread safe.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class MinimumTranslationSeparator {
+
+  /**
+   * Damping passes start with, in 1/256ths of the penetration.
+   */
+  public static final int DEFAULT_DAMPING = 512;
+
+  /**
+   * Fraction of the initial cluster covered by cells, each counted as
+   * 2 * size + 2 tiles across: its own 2 * size + 1 and half a tile of slack
+   * to either side. Separated cells may touch, so no gap is counted.
+   */
+  public static final double PACKING = 0.9;
+
+  /**
+   * Passes before falling back to expansion.
+   */
+  public static final int MAX_PASSES = 256;
+
+  private static final int HISTORY = 16;
+  private static final int MIN_DAMPING = 32;
+
+  private final int initialDamping;
+  private final ForkJoinPool pool;
+
+  private int[] order = new int[0];
+  private long[] keys = new long[0];
+  private int[] bucketStart = new int[0];
+  private int[] bucketCells = new int[0];
+  private int[] pushX = new int[0];
+  private int[] pushY = new int[0];
+  private final long[] history = new long[HISTORY];
+
+  private int shift;
+  private int originX;
+  private int originY;
+  private int gridWidth;
+  private int gridHeight;
+
+  private int passes;
+  private int cycles;
+  private int expansions;
+
+  public MinimumTranslationSeparator() {
+    this(DEFAULT_DAMPING, null);
+  }
+
+  /**
+   * @param damping
+   *          1 to 1024, in 1/256ths of the penetration
+   */
+  public MinimumTranslationSeparator(int damping) {
+    this(damping, null);
+  }
+
+  /**
+   * @param damping
+   *          1 to 1024, in 1/256ths of the penetration
+   * @param pool
+   *          sums the pushes of each pass when called outside a fork/join
+   *          pool; null to sum them on the calling thread
+   */
+  public MinimumTranslationSeparator(int damping, ForkJoinPool pool) {
+    if (damping < 1 || damping > 1024) {
+      throw new IllegalArgumentException("damping must be in [1, 1024]: " + damping);
+    }
+    this.initialDamping = damping;
+    this.pool = pool;
+  }
+
+  /**
+   * Moves the cells of the store until none overlap, in the sense of
+   * {@link Generator#isOverlap(CellStore, int, int)}.
+   * 
+   * @return the number of passes, including expansion passes
+   */
+  public int separate(CellStore store) {
+    int n = store.size;
+    passes = 0;
+    cycles = 0;
+    expansions = 0;
+    if (order.length < n) {
+      order = new int[n];
+      keys = new long[n];
+      pushX = new int[n];
+      pushY = new int[n];
+    }
+    Arrays.fill(history, 0);
+    if (n == 0) {
+      return 0;
+    }
+
+    scale(store);
+    sort(store);
+    int damping = initialDamping;
+    boolean asymmetric = false;
+    while (push(store, damping, asymmetric)) {
+      if (passes == MAX_PASSES) {
+        sort(store);
+        while (isAnyOverlap(store)) {
+          expand(store);
+          expansions++;
+          passes++;
+        }
+        break;
+      }
+      move(store);
+      passes++;
+      long hash = hash(store);
+      if (isRepeat(hash)) {
+        cycles++;
+        asymmetric = true;
+        damping = Math.max(MIN_DAMPING, damping >> 1);
+        Arrays.fill(history, 0);
+      }
+      history[passes % HISTORY] = hash;
+    }
+    Arrays.fill(store.type, 0, n, Cell.TYPE_NONE);
+    return passes;
+  }
+
+  /**
+   * @return passes made by the last {@link #separate(CellStore)}
+   */
+  public int getPassCount() {
+    return passes;
+  }
+
+  /**
+   * @return the times the last {@link #separate(CellStore)} found its passes
+   *         cycling
+   */
+  public int getCycleCount() {
+    return cycles;
+  }
+
+  /**
+   * @return expansion passes made by the last {@link #separate(CellStore)}
+   */
+  public int getExpansionCount() {
+    return expansions;
+  }
+
+  /**
+   * Sums the push of every overlapping pair into pushX and pushY.
+   * 
+   * @return true if any pair overlaps
+   */
+  private boolean push(CellStore store, int damping, boolean asymmetric) {
+    if (pool != null) {
+      bucket(store);
+      PushTask task = new PushTask(store, damping, asymmetric, 0, store.size);
+      if (ForkJoinTask.inForkJoinPool()) {
+        task.invoke();
+      } else {
+        pool.invoke(task);
+      }
+      return task.overlap;
+    }
+    sortByLeft(store);
+    int n = store.size;
+    int[] cx = store.centerX;
+    int[] sx = store.sizeX;
+    Arrays.fill(pushX, 0, n, 0);
+    Arrays.fill(pushY, 0, n, 0);
+    boolean any = false;
+    for (int k = 0; k < n; k++) {
+      int i = order[k];
+      int right = cx[i] + sx[i];
+      for (int m = k + 1; m < n; m++) {
+        int j = order[m];
+        if (cx[j] - sx[j] > right) {
+          break;
+        }
+        if (Generator.isOverlap(store, i, j)) {
+          pushPair(store, i, j, damping, asymmetric, pushX, pushY, -1);
+          any = true;
+        }
+      }
+    }
+    return any;
+  }
+
+  /**
+   * Adds the push of an overlapping pair to pushX and pushY for both cells or,
+   * if owner is not -1, for that cell only. The push does not depend on which
+   * of the two is i.
+   */
+  private static void pushPair(CellStore store, int i, int j, int damping, boolean asymmetric, int[] pushX,
+      int[] pushY, int owner) {
+    int[] cx = store.centerX;
+    int[] cy = store.centerY;
+    int[] sx = store.sizeX;
+    int[] sy = store.sizeY;
+    int a = i < j ? i : j;
+    int b = i < j ? j : i;
+    int dx = cx[a] - cx[b];
+    int dy = cy[a] - cy[b];
+    // cells span 2 * size + 1 tiles, so while the centers are no further
+    // apart than the sum of sizes they share tiles; p is the number of shared
+    // rows or columns, and a full push leaves the cells adjacent, no gap
+    int px = sx[a] + sx[b] + 1 - (dx < 0 ? -dx : dx);
+    int py = sy[a] + sy[b] + 1 - (dy < 0 ? -dy : dy);
+    if (px <= py) {
+      // a moves toward positive x if it is right of b, else negative
+      // rounding both halves up keeps a cell between two others from
+      // taking every push while its neighbours stay put
+      px = damp(px, damping);
+      int s = dx > 0 ? 1 : -1;
+      int half = (px + 1) >> 1;
+      if (owner != b) {
+        pushX[a] += asymmetric ? 0 : s * half;
+      }
+      if (owner != a) {
+        pushX[b] -= asymmetric ? s * px : s * half;
+      }
+    } else {
+      py = damp(py, damping);
+      int s = dy > 0 ? 1 : -1;
+      int half = (py + 1) >> 1;
+      if (owner != b) {
+        pushY[a] += asymmetric ? 0 : s * half;
+      }
+      if (owner != a) {
+        pushY[b] -= asymmetric ? s * py : s * half;
+      }
+    }
+  }
+
+  /**
+   * Sorts the cells into grid buckets, by index within a bucket. The bucket
+   * size is the average cell extent rounded up to a power of two, doubled
+   * while the grid has many more buckets than cells.
+   */
+  private void bucket(CellStore store) {
+    int n = store.size;
+    int[] cx = store.centerX;
+    int[] cy = store.centerY;
+    int[] sx = store.sizeX;
+    int[] sy = store.sizeY;
+    int xmin = Integer.MAX_VALUE, xmax = Integer.MIN_VALUE;
+    int ymin = Integer.MAX_VALUE, ymax = Integer.MIN_VALUE;
+    long extent = 0;
+    for (int i = 0; i < n; i++) {
+      xmin = Math.min(xmin, cx[i] - sx[i]);
+      xmax = Math.max(xmax, cx[i] + sx[i]);
+      ymin = Math.min(ymin, cy[i] - sy[i]);
+      ymax = Math.max(ymax, cy[i] + sy[i]);
+      extent += 2 * Math.max(sx[i], sy[i]) + 1;
+    }
+    int size = (int) (extent / n);
+    shift = 32 - Integer.numberOfLeadingZeros(Math.max(size - 1, 0));
+    originX = xmin;
+    originY = ymin;
+    while (true) {
+      gridWidth = (int) (((long) xmax - xmin) >> shift) + 1;
+      gridHeight = (int) (((long) ymax - ymin) >> shift) + 1;
+      if ((long) gridWidth * gridHeight <= 4L * n + 64) {
+        break;
+      }
+      shift++;
+    }
+
+    int count = gridWidth * gridHeight;
+    if (bucketStart.length < count + 1) {
+      bucketStart = new int[count + 1];
+    } else {
+      Arrays.fill(bucketStart, 0, count + 1, 0);
+    }
+    // count into bucketStart[b + 1], then sum into the start of each bucket
+    int total = 0;
+    for (int i = 0; i < n; i++) {
+      for (int by = bucketY(cy[i] - sy[i]); by <= bucketY(cy[i] + sy[i]); by++) {
+        for (int bx = bucketX(cx[i] - sx[i]); bx <= bucketX(cx[i] + sx[i]); bx++) {
+          bucketStart[by * gridWidth + bx + 1]++;
+          total++;
+        }
+      }
+    }
+    for (int b = 0; b < count; b++) {
+      bucketStart[b + 1] += bucketStart[b];
+    }
+    if (bucketCells.length < total) {
+      bucketCells = new int[total];
+    }
+    for (int i = 0; i < n; i++) {
+      for (int by = bucketY(cy[i] - sy[i]); by <= bucketY(cy[i] + sy[i]); by++) {
+        for (int bx = bucketX(cx[i] - sx[i]); bx <= bucketX(cx[i] + sx[i]); bx++) {
+          bucketCells[bucketStart[by * gridWidth + bx]++] = i;
+        }
+      }
+    }
+    // filling moved each start to the start of the next bucket
+    for (int b = count; b > 0; b--) {
+      bucketStart[b] = bucketStart[b - 1];
+    }
+    bucketStart[0] = 0;
+  }
+
+  private int bucketX(int x) {
+    return (int) (((long) x - originX) >> shift);
+  }
+
+  private int bucketY(int y) {
+    return (int) (((long) y - originY) >> shift);
+  }
+
+  /**
+   * Sums the pushes on cells [from, to), splitting into chunks. A pair of
+   * cells shares every bucket in the overlap of their bucket ranges, so it is
+   * only counted in the lowest of them.
+   */
+  @SuppressWarnings("serial")
+  private class PushTask extends RecursiveAction {
+
+    private static final int CHUNK = 512;
+
+    private final CellStore store;
+    private final int damping;
+    private final boolean asymmetric;
+    private final int from;
+    private final int to;
+
+    boolean overlap;
+
+    PushTask(CellStore store, int damping, boolean asymmetric, int from, int to) {
+      this.store = store;
+      this.damping = damping;
+      this.asymmetric = asymmetric;
+      this.from = from;
+      this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+      if (to - from > CHUNK) {
+        int mid = (from + to) >>> 1;
+        PushTask low = new PushTask(store, damping, asymmetric, from, mid);
+        PushTask high = new PushTask(store, damping, asymmetric, mid, to);
+        invokeAll(low, high);
+        overlap = low.overlap || high.overlap;
+        return;
+      }
+      int[] cx = store.centerX;
+      int[] cy = store.centerY;
+      int[] sx = store.sizeX;
+      int[] sy = store.sizeY;
+      for (int i = from; i < to; i++) {
+        pushX[i] = 0;
+        pushY[i] = 0;
+        int bx1 = bucketX(cx[i] - sx[i]), bx2 = bucketX(cx[i] + sx[i]);
+        int by1 = bucketY(cy[i] - sy[i]), by2 = bucketY(cy[i] + sy[i]);
+        for (int by = by1; by <= by2; by++) {
+          for (int bx = bx1; bx <= bx2; bx++) {
+            int b = by * gridWidth + bx;
+            for (int e = bucketStart[b]; e < bucketStart[b + 1]; e++) {
+              int j = bucketCells[e];
+              if (j == i || bx != Math.max(bx1, bucketX(cx[j] - sx[j]))
+                  || by != Math.max(by1, bucketY(cy[j] - sy[j]))) {
+                continue;
+              }
+              if (Generator.isOverlap(store, i, j)) {
+                pushPair(store, i, j, damping, asymmetric, pushX, pushY, i);
+                overlap = true;
+              }
+            }
+          }
+        }
+      }
+    }
+
+  }
+
+  /**
+   * Scales the centers away from their centroid so that their root mean
+   * square distance is that of a disc holding the area of the cells at
+   * {@link #PACKING} density. Never moves cells closer.
+   */
+  private static void scale(CellStore store) {
+    int n = store.size;
+    double sumX = 0, sumY = 0, area = 0;
+    for (int i = 0; i < n; i++) {
+      sumX += store.centerX[i];
+      sumY += store.centerY[i];
+      area += (2.0 * store.sizeX[i] + 2) * (2.0 * store.sizeY[i] + 2);
+    }
+    double mx = sumX / n;
+    double my = sumY / n;
+    double r2 = 0;
+    for (int i = 0; i < n; i++) {
+      double dx = store.centerX[i] - mx;
+      double dy = store.centerY[i] - my;
+      r2 += dx * dx + dy * dy;
+    }
+    // the root mean square distance of a uniform disc is its radius / sqrt(2)
+    double current = Math.sqrt(r2 / n);
+    double target = Math.sqrt(area / (Math.PI * PACKING) / 2);
+    if (current == 0 || target <= current) {
+      return;
+    }
+    double f = target / current;
+    for (int i = 0; i < n; i++) {
+      store.centerX[i] = (int) Math.round(mx + (store.centerX[i] - mx) * f);
+      store.centerY[i] = (int) Math.round(my + (store.centerY[i] - my) * f);
+    }
+  }
+
+  /**
+   * Sorts the order on left edge, then index.
+   */
+  private void sort(CellStore store) {
+    int n = store.size;
+    for (int i = 0; i < n; i++) {
+      // the index fills the low half and is never negative
+      keys[i] = ((long) (store.centerX[i] - store.sizeX[i]) << 32) | i;
+    }
+    Arrays.sort(keys, 0, n);
+    for (int k = 0; k < n; k++) {
+      order[k] = (int) keys[k];
+    }
+  }
+
+  /**
+   * Insertion sort on left edge, then index; the order is kept between passes
+   * and cells move little per pass, so it is nearly sorted.
+   */
+  private void sortByLeft(CellStore store) {
+    int[] cx = store.centerX;
+    int[] sx = store.sizeX;
+    for (int k = 1; k < store.size; k++) {
+      int id = order[k];
+      int left = cx[id] - sx[id];
+      int m = k - 1;
+      while (m >= 0) {
+        int o = order[m];
+        int l = cx[o] - sx[o];
+        if (l < left || (l == left && o < id)) {
+          break;
+        }
+        order[m + 1] = o;
+        m--;
+      }
+      order[m + 1] = id;
+    }
+  }
+
+  private void move(CellStore store) {
+    for (int i = 0; i < store.size; i++) {
+      store.centerX[i] += pushX[i];
+      store.centerY[i] += pushY[i];
+    }
+  }
+
+  /**
+   * @return the penetration scaled by damping/256, rounded up so that any
+   *         overlap moves its cells at least one tile
+   */
+  private static int damp(int penetration, int damping) {
+    return (int) (((long) penetration * damping + 255) >> 8);
+  }
+
+  private boolean isAnyOverlap(CellStore store) {
+    sortByLeft(store);
+    int[] cx = store.centerX;
+    int[] sx = store.sizeX;
+    for (int k = 0; k < store.size; k++) {
+      int i = order[k];
+      int right = cx[i] + sx[i];
+      for (int m = k + 1; m < store.size; m++) {
+        int j = order[m];
+        if (cx[j] - sx[j] > right) {
+          break;
+        }
+        if (Generator.isOverlap(store, i, j)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Doubles the distance of every center from the centroid. Cells sharing a
+   * center are first given ranks in index order, and ranks 1 to 3 are offset
+   * to the odd positions next to the doubled center, which no doubled center
+   * can take.
+   */
+  private void expand(CellStore store) {
+    int n = store.size;
+    int[] cx = store.centerX;
+    int[] cy = store.centerY;
+    long sumX = 0, sumY = 0;
+    for (int i = 0; i < n; i++) {
+      sumX += cx[i];
+      sumY += cy[i];
+    }
+    int mx = (int) Math.floor((double) sumX / n);
+    int my = (int) Math.floor((double) sumY / n);
+
+    Integer[] ids = new Integer[n];
+    for (int i = 0; i < n; i++) {
+      ids[i] = i;
+    }
+    final int[] fx = cx;
+    final int[] fy = cy;
+    Arrays.sort(ids, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        if (fx[a] != fx[b]) {
+          return fx[a] < fx[b] ? -1 : 1;
+        }
+        if (fy[a] != fy[b]) {
+          return fy[a] < fy[b] ? -1 : 1;
+        }
+        return a < b ? -1 : (a > b ? 1 : 0);
+      }
+    });
+    int rank = 0;
+    int[] ox = new int[n];
+    int[] oy = new int[n];
+    for (int k = 0; k < n; k++) {
+      int i = ids[k];
+      if (k > 0 && cx[ids[k - 1]] == cx[i] && cy[ids[k - 1]] == cy[i]) {
+        rank++;
+      } else {
+        rank = 0;
+      }
+      // ranks past 3 stay on the doubled center and split on a later pass
+      ox[i] = rank == 1 || rank == 3 ? 1 : 0;
+      oy[i] = rank == 2 || rank == 3 ? 1 : 0;
+    }
+    for (int i = 0; i < n; i++) {
+      cx[i] = mx + 2 * (cx[i] - mx) + ox[i];
+      cy[i] = my + 2 * (cy[i] - my) + oy[i];
+    }
+  }
+
+  private boolean isRepeat(long hash) {
+    for (int k = 0; k < HISTORY; k++) {
+      if (history[k] == hash) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static long hash(CellStore store) {
+    long h = store.size;
+    for (int i = 0; i < store.size; i++) {
+      h = SplitMix64.mix(h + (((long) store.centerX[i] << 32) ^ (store.centerY[i] & 0xFFFFFFFFL)));
+    }
+    // zero marks an empty history slot
+    return SplitMix64.nonZero(h);
+  }
+
+}
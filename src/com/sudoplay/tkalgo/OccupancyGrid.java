@@ -0,0 +1,236 @@
+package com.sudoplay.tkalgo;
+
+import java.util.List;
+
+/**
+ * One bit per tile raster over a {@link CellBounds}, recording which tiles are
+ * covered by a cell.
+ * <p>
+ * Cells are stamped in once, a row at a time, and every tile left clear is a
+ * filler tile. Tiles outside the bounds are never vacant, matching the filler
+ * pass which only fills the bounds.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class OccupancyGrid {
+
+  private final int left;
+  private final int bottom;
+  private final int width;
+  private final int height;
+  private final int wordsPerRow;
+  private final long[] bits;
+
+  public OccupancyGrid(CellBounds bounds) {
+    left = bounds.getLeft();
+    bottom = bounds.getBottom();
+    width = Math.max(bounds.getWidth(), 0);
+    height = Math.max(bounds.getHeight(), 0);
+    wordsPerRow = (width + 63) >>> 6;
+    bits = new long[wordsPerRow * height];
+  }
+
+  /**
+   * @return a grid over the bounds of the store with every cell stamped in
+   */
+  public static OccupancyGrid get(CellStore store) {
+    OccupancyGrid grid = new OccupancyGrid(CellBounds.get(store));
+    grid.stamp(store);
+    return grid;
+  }
+
+  public int getLeft() {
+    return left;
+  }
+
+  public int getBottom() {
+    return bottom;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public void stamp(CellStore store) {
+    for (int i = 0; i < store.size(); i++) {
+      stamp(store.getLeft(i), store.getBottom(i), store.getRight(i), store.getTop(i));
+    }
+  }
+
+  /**
+   * Marks every tile in the rectangle as occupied; right and top are
+   * exclusive.
+   */
+  public void stamp(int x1, int y1, int x2, int y2) {
+    x1 = Math.max(x1 - left, 0);
+    x2 = Math.min(x2 - left, width);
+    y1 = Math.max(y1 - bottom, 0);
+    y2 = Math.min(y2 - bottom, height);
+    if (x1 >= x2) {
+      return;
+    }
+    int w1 = x1 >>> 6;
+    int w2 = (x2 - 1) >>> 6;
+    long m1 = -1L << x1;
+    long m2 = -1L >>> (63 - ((x2 - 1) & 63));
+    for (int y = y1; y < y2; y++) {
+      int row = y * wordsPerRow;
+      if (w1 == w2) {
+        bits[row + w1] |= m1 & m2;
+      } else {
+        bits[row + w1] |= m1;
+        for (int w = w1 + 1; w < w2; w++) {
+          bits[row + w] = -1L;
+        }
+        bits[row + w2] |= m2;
+      }
+    }
+  }
+
+  /**
+   * @return a unique index for a tile inside the bounds
+   */
+  public int getTileIndex(int x, int y) {
+    return (y - bottom) * width + (x - left);
+  }
+
+  public void set(int x, int y) {
+    x -= left;
+    y -= bottom;
+    if (x >= 0 && x < width && y >= 0 && y < height) {
+      bits[y * wordsPerRow + (x >>> 6)] |= 1L << x;
+    }
+  }
+
+  /**
+   * @return true if the tile is inside the bounds and not covered by a cell
+   */
+  public boolean isVacant(int x, int y) {
+    x -= left;
+    y -= bottom;
+    if (x < 0 || x >= width || y < 0 || y >= height) {
+      return false;
+    }
+    return (bits[y * wordsPerRow + (x >>> 6)] & (1L << x)) == 0;
+  }
+
+  /**
+   * Covers the vacant tiles inside the window with disjoint rectangles. Each
+   * row is split into runs of vacant tiles and a run is merged with the
+   * rectangle above it when both span the same columns.
+   */
+  public List<FillerRegion> getVacantRegions(int x1, int y1, int x2, int y2, List<FillerRegion> store) {
+    x1 = Math.max(x1 - left, 0);
+    x2 = Math.min(x2 - left, width);
+    y1 = Math.max(y1 - bottom, 0);
+    y2 = Math.min(y2 - bottom, height);
+    if (x1 >= x2 || y1 >= y2) {
+      return store;
+    }
+    int max = (x2 - x1 + 1) >> 1;
+    int[] openStart = new int[max], openEnd = new int[max], openRow = new int[max];
+    int[] runStart = new int[max], runEnd = new int[max];
+    int[] nextStart = new int[max], nextEnd = new int[max], nextRow = new int[max];
+    int open = 0;
+    for (int y = y1; y <= y2; y++) {
+      int runs = 0;
+      if (y < y2) {
+        int row = y * wordsPerRow;
+        int x = nextVacant(row, x1, x2);
+        while (x < x2) {
+          int end = nextOccupied(row, x, x2);
+          runStart[runs] = x;
+          runEnd[runs++] = end;
+          x = nextVacant(row, end, x2);
+        }
+      }
+      // both lists are sorted by start column
+      int next = 0;
+      int o = 0;
+      for (int r = 0; r < runs; r++) {
+        while (o < open && openStart[o] < runStart[r]) {
+          close(openStart[o], openEnd[o], openRow[o], y, store);
+          o++;
+        }
+        nextStart[next] = runStart[r];
+        nextEnd[next] = runEnd[r];
+        if (o < open && openStart[o] == runStart[r] && openEnd[o] == runEnd[r]) {
+          nextRow[next++] = openRow[o++];
+        } else {
+          if (o < open && openStart[o] == runStart[r]) {
+            close(openStart[o], openEnd[o], openRow[o], y, store);
+            o++;
+          }
+          nextRow[next++] = y;
+        }
+      }
+      while (o < open) {
+        close(openStart[o], openEnd[o], openRow[o], y, store);
+        o++;
+      }
+      int[] t;
+      t = openStart;
+      openStart = nextStart;
+      nextStart = t;
+      t = openEnd;
+      openEnd = nextEnd;
+      nextEnd = t;
+      t = openRow;
+      openRow = nextRow;
+      nextRow = t;
+      open = next;
+    }
+    return store;
+  }
+
+  private void close(int x1, int x2, int y1, int y2, List<FillerRegion> store) {
+    store.add(new FillerRegion(x1 + left, y1 + bottom, x2 - x1, y2 - y1));
+  }
+
+  /**
+   * @return the first vacant column at or after x in the row, or limit
+   */
+  private int nextVacant(int row, int x, int limit) {
+    while (x < limit) {
+      long word = ~bits[row + (x >>> 6)] & (-1L << x);
+      if (word != 0) {
+        return Math.min((x & ~63) + Long.numberOfTrailingZeros(word), limit);
+      }
+      x = (x & ~63) + 64;
+    }
+    return limit;
+  }
+
+  /**
+   * @return the first occupied column at or after x in the row, or limit
+   */
+  private int nextOccupied(int row, int x, int limit) {
+    while (x < limit) {
+      long word = bits[row + (x >>> 6)] & (-1L << x);
+      if (word != 0) {
+        return Math.min((x & ~63) + Long.numberOfTrailingZeros(word), limit);
+      }
+      x = (x & ~63) + 64;
+    }
+    return limit;
+  }
+
+  public int getVacantCount() {
+    long occupied = 0;
+    for (long word : bits) {
+      occupied += Long.bitCount(word);
+    }
+    return (int) ((long) width * height - occupied);
+  }
+
+  @Override
+  public String toString() {
+    return "OccupancyGrid [left=" + left + ", bottom=" + bottom + ", width=" + width + ", height=" + height + "]";
+  }
+
+}
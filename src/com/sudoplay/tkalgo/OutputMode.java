@@ -0,0 +1,22 @@
+package com.sudoplay.tkalgo;
+
+/**
+ * Selects how a {@link Dungeon} holds its final cells.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public enum OutputMode {
+
+  /**
+   * Master cells are kept as a list of {@link Cell}s.
+   */
+  CELLS,
+
+  /**
+   * Master cells are rasterized into a {@link TileMap} and the list is
+   * dropped; rooms are still kept as cells.
+   */
+  TILE_MAP
+
+}
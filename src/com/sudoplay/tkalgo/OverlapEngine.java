@@ -0,0 +1,31 @@
+package com.sudoplay.tkalgo;
+
+import java.util.Random;
+
+/**
+ * Detects and resolves overlapping cells during separation.
+ * <p>
+ * Every engine must produce exactly the same cell positions as
+ * {@link Generator#moveCells(Random, CellStore)} for the same random sequence,
+ * so engines differ only in how fast they find overlapping pairs. Engines may
+ * keep scratch state between passes and are not thread safe.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public interface OverlapEngine {
+
+  /**
+   * Flags an overlapping pair of cells with {@link Cell#TYPE_OVERLAP}.
+   * 
+   * @return true if any two cells overlap
+   */
+  boolean isAnyOverlap(CellStore store);
+
+  /**
+   * Performs one separation pass, moving each overlapping cell away from the
+   * cells it overlaps.
+   */
+  void moveCells(Random rand, CellStore store);
+
+}
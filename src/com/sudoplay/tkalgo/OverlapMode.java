@@ -0,0 +1,39 @@
+package com.sudoplay.tkalgo;
+
+/**
+ * Selects the {@link OverlapEngine} used to separate cells.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public enum OverlapMode {
+
+  /**
+   * Tests every pair of cells.
+   */
+  BRUTE_FORCE,
+
+  /**
+   * Tests only cells that share a bucket in a uniform grid.
+   */
+  UNIFORM_GRID,
+
+  /**
+   * Tests only cells whose x-intervals overlap, keeping the cells sorted by
+   * their left edge between passes.
+   */
+  SWEEP_AND_PRUNE;
+
+  public OverlapEngine createEngine() {
+    switch (this) {
+    case UNIFORM_GRID:
+      return new UniformGridOverlapEngine();
+    case SWEEP_AND_PRUNE:
+      return new SweepAndPruneOverlapEngine();
+    case BRUTE_FORCE:
+    default:
+      return new BruteForceOverlapEngine();
+    }
+  }
+
+}
@@ -0,0 +1,72 @@
+package com.sudoplay.tkalgo;
+
+/**
+ * A tile on the border of a chunk where a corridor crosses into the
+ * neighbouring chunk. The neighbour's portal on the same border is the
+ * adjacent tile across it.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class Portal {
+
+  /**
+   * The border of the chunk the portal is on; north is towards +y.
+   */
+  public enum Side {
+    NORTH, EAST, SOUTH, WEST
+  }
+
+  private final Side side;
+  private final int x;
+  private final int y;
+
+  Portal(Side side, int x, int y) {
+    this.side = side;
+    this.x = x;
+    this.y = y;
+  }
+
+  public Side getSide() {
+    return side;
+  }
+
+  public int getX() {
+    return x;
+  }
+
+  public int getY() {
+    return y;
+  }
+
+  @Override
+  public int hashCode() {
+    final int prime = 31;
+    int result = 1;
+    result = prime * result + ((side == null) ? 0 : side.hashCode());
+    result = prime * result + x;
+    result = prime * result + y;
+    return result;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    }
+    if (obj == null) {
+      return false;
+    }
+    if (getClass() != obj.getClass()) {
+      return false;
+    }
+    Portal other = (Portal) obj;
+    return side == other.side && x == other.x && y == other.y;
+  }
+
+  @Override
+  public String toString() {
+    return "Portal [side=" + side + ", x=" + x + ", y=" + y + "]";
+  }
+
+}
@@ -16,6 +16,15 @@ public class RoomConnection {
     return points;
   }
 
+  /**
+   * Takes ownership of the points.
+   */
+  static RoomConnection get(ArrayList<Vector2i> points) {
+    RoomConnection con = new RoomConnection();
+    con.points = points;
+    return con;
+  }
+
   public static RoomConnection get(Vector2i start, Vector2i end) {
     RoomConnection con = new RoomConnection();
     con.points.add(new Vector2i(start));
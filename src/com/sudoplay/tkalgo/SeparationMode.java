@@ -0,0 +1,33 @@
+package com.sudoplay.tkalgo;
+
+/**
+ * Selects how overlapping cells are moved apart.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public enum SeparationMode {
+
+  /**
+   * Moves each overlapping cell a unit step away from every cell it overlaps,
+   * breaking ties at random, with the {@link OverlapEngine} of the
+   * {@link OverlapMode}. Gives the same dungeons as {@link Main}.
+   */
+  STEERING,
+
+  /**
+   * Pushes overlapping pairs apart along their minimum translation vector
+   * with a {@link MinimumTranslationSeparator}. Takes far fewer passes and
+   * draws no random numbers, so it gives different dungeons than
+   * {@link #STEERING}; the overlap mode is not used.
+   */
+  MINIMUM_TRANSLATION,
+
+  /**
+   * {@link #MINIMUM_TRANSLATION} with the pushes of each pass summed in
+   * parallel. Gives the same dungeons as {@link #MINIMUM_TRANSLATION} for any
+   * number of threads.
+   */
+  PARALLEL_MINIMUM_TRANSLATION
+
+}
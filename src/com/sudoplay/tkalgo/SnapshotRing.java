@@ -0,0 +1,86 @@
+package com.sudoplay.tkalgo;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded ring of the most recently published items, for handing snapshots
+ * from one producer thread to any number of readers without locking.
+ * <p>
+ * Publishing never waits: once the ring is full each item overwrites the
+ * oldest, so a slow reader skips items instead of holding up the producer.
+ * Items must not be modified after they are published.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class SnapshotRing<T> {
+
+  private final AtomicReferenceArray<T> slots;
+  private final int mask;
+  private final AtomicLong published = new AtomicLong();
+
+  /**
+   * @param capacity
+   *          a power of two
+   */
+  public SnapshotRing(int capacity) {
+    if (capacity < 1 || (capacity & (capacity - 1)) != 0) {
+      throw new IllegalArgumentException("capacity must be a power of two: " + capacity);
+    }
+    slots = new AtomicReferenceArray<T>(capacity);
+    mask = capacity - 1;
+  }
+
+  /**
+   * Must only be called from one thread at a time.
+   * 
+   * @return the sequence number of the item, starting at 1
+   */
+  public long publish(T item) {
+    if (item == null) {
+      throw new IllegalArgumentException("item is null");
+    }
+    long sequence = published.get() + 1;
+    slots.set((int) sequence & mask, item);
+    published.set(sequence);
+    return sequence;
+  }
+
+  /**
+   * @return the last published item, or null if none has been
+   */
+  public T getLatest() {
+    long sequence = published.get();
+    return sequence == 0 ? null : slots.get((int) sequence & mask);
+  }
+
+  /**
+   * Only the last capacity - 1 items can be read this way, as the oldest slot
+   * may be in the middle of being overwritten.
+   * 
+   * @return the item with the given sequence number, or null if it has not
+   *         been published yet or is too old
+   */
+  public T get(long sequence) {
+    if (sequence < 1 || sequence > published.get()) {
+      return null;
+    }
+    T item = slots.get((int) sequence & mask);
+    // the producer writes the slot for sequence + capacity before publishing
+    // it, which it may have started once sequence + capacity - 1 is published
+    return published.get() - sequence < slots.length() - 1 ? item : null;
+  }
+
+  /**
+   * @return the sequence number of the last published item, or zero
+   */
+  public long getPublishedCount() {
+    return published.get();
+  }
+
+  public int getCapacity() {
+    return slots.length();
+  }
+
+}
@@ -0,0 +1,32 @@
+package com.sudoplay.tkalgo;
+
+/**
+ * The SplitMix64 constants and finalizer, for deriving seeds and counter-based
+ * random numbers.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+final class SplitMix64 {
+
+  static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+  private SplitMix64() {
+    //
+  }
+
+  static long mix(long z) {
+    z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+    z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+    return z ^ (z >>> 31);
+  }
+
+  /**
+   * @return z, or a fixed non-zero value if z is zero; a zero state would
+   *         leave {@link XORShiftRandom} stuck at zero
+   */
+  static long nonZero(long z) {
+    return z != 0 ? z : GOLDEN_GAMMA;
+  }
+
+}
@@ -0,0 +1,16 @@
+package com.sudoplay.tkalgo;
+
+/**
+ * One step of a pipeline run by a {@link StageScheduler}.
+ * <p>
+ * A stage should return when its work is done instead of starting the next
+ * stage itself; the scheduler decides what runs next.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public interface Stage {
+
+  void run();
+
+}
@@ -0,0 +1,16 @@
+package com.sudoplay.tkalgo;
+
+/**
+ * Called by a {@link StageScheduler} around every stage it runs, on the thread
+ * running the stage.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public interface StageHook<K> {
+
+  void beforeStage(K key, long cycle);
+
+  void afterStage(K key, long cycle, long nanos);
+
+}
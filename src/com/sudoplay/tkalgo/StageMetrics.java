@@ -0,0 +1,63 @@
+package com.sudoplay.tkalgo;
+
+/**
+ * Wall time, allocation and counters for one stage of one run.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class StageMetrics {
+
+  private final GenerationStage stage;
+  private final long seed;
+  private final long wallNanos;
+  private final long allocatedBytes;
+  private final long[] counters;
+
+  StageMetrics(GenerationStage stage, long seed, long wallNanos, long allocatedBytes, long[] counters) {
+    this.stage = stage;
+    this.seed = seed;
+    this.wallNanos = wallNanos;
+    this.allocatedBytes = allocatedBytes;
+    this.counters = counters;
+  }
+
+  public GenerationStage getStage() {
+    return stage;
+  }
+
+  public long getSeed() {
+    return seed;
+  }
+
+  public long getWallNanos() {
+    return wallNanos;
+  }
+
+  /**
+   * @return bytes allocated by the generating thread during the stage, or -1
+   *         if the JVM cannot measure it; work the stage hands to other
+   *         threads is not included
+   */
+  public long getAllocatedBytes() {
+    return allocatedBytes;
+  }
+
+  public long getCounter(GenerationCounter counter) {
+    return counters[counter.ordinal()];
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("StageMetrics [stage=").append(stage);
+    sb.append(", seed=").append(seed);
+    sb.append(", wallNanos=").append(wallNanos);
+    sb.append(", allocatedBytes=").append(allocatedBytes);
+    for (GenerationCounter counter : GenerationCounter.values()) {
+      sb.append(", ").append(counter).append("=").append(counters[counter.ordinal()]);
+    }
+    return sb.append("]").toString();
+  }
+
+}
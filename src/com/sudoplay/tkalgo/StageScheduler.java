@@ -0,0 +1,206 @@
+package com.sudoplay.tkalgo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Runs an ordered list of stages from a loop.
+ * <p>
+ * Stages never call each other, so the stack depth is the same on the first
+ * stage and after a million cycles. A looping scheduler starts over at the
+ * first stage after the last one and only completes when {@link #stop()} is
+ * called; otherwise it completes after the last stage.
+ * <p>
+ * The scheduler is not thread safe, except for {@link #stop()}, which may be
+ * called from any thread and takes effect before the next stage starts.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class StageScheduler<K> {
+
+  private final ArrayList<K> keys = new ArrayList<K>();
+  private final ArrayList<Stage> stages = new ArrayList<Stage>();
+  private final List<StageHook<K>> hooks = new CopyOnWriteArrayList<StageHook<K>>();
+
+  private boolean looping;
+  private boolean running;
+  private volatile boolean stopped;
+  private int next;
+  private long cycle;
+
+  public StageScheduler() {
+    this(false);
+  }
+
+  public StageScheduler(boolean looping) {
+    this.looping = looping;
+  }
+
+  /**
+   * Appends a stage to the end of the cycle.
+   * 
+   * @throws IllegalArgumentException
+   *           if the key is already scheduled
+   */
+  public StageScheduler<K> add(K key, Stage stage) {
+    if (stage == null) {
+      throw new IllegalArgumentException("stage is null");
+    }
+    if (keys.contains(key)) {
+      throw new IllegalArgumentException("Stage already scheduled: " + key);
+    }
+    keys.add(key);
+    stages.add(stage);
+    return this;
+  }
+
+  /**
+   * Replaces the implementation of a scheduled stage, keeping its place in the
+   * cycle.
+   * 
+   * @return the replaced stage
+   * @throws IllegalArgumentException
+   *           if the key is not scheduled
+   */
+  public Stage set(K key, Stage stage) {
+    if (stage == null) {
+      throw new IllegalArgumentException("stage is null");
+    }
+    int index = keys.indexOf(key);
+    if (index < 0) {
+      throw new IllegalArgumentException("Stage not scheduled: " + key);
+    }
+    return stages.set(index, stage);
+  }
+
+  public void addHook(StageHook<K> hook) {
+    hooks.add(hook);
+  }
+
+  public void removeHook(StageHook<K> hook) {
+    hooks.remove(hook);
+  }
+
+  public boolean isLooping() {
+    return looping;
+  }
+
+  public StageScheduler<K> setLooping(boolean looping) {
+    this.looping = looping;
+    return this;
+  }
+
+  /**
+   * Runs the next stage.
+   * 
+   * @return the key of the stage run, or null if the scheduler is complete
+   * @throws IllegalStateException
+   *           if called from inside a stage or hook of this scheduler
+   */
+  public K step() {
+    if (running) {
+      throw new IllegalStateException("step called from inside a stage");
+    }
+    if (isComplete()) {
+      return null;
+    }
+    K key = keys.get(next);
+    Stage stage = stages.get(next);
+    long c = cycle;
+    running = true;
+    try {
+      for (StageHook<K> hook : hooks) {
+        hook.beforeStage(key, c);
+      }
+      long t = System.nanoTime();
+      stage.run();
+      long nanos = System.nanoTime() - t;
+      for (StageHook<K> hook : hooks) {
+        hook.afterStage(key, c, nanos);
+      }
+    } finally {
+      running = false;
+    }
+    next++;
+    if (next == keys.size() && looping) {
+      next = 0;
+      cycle++;
+    }
+    return key;
+  }
+
+  /**
+   * Runs stages up to and including the last stage of the current cycle.
+   * 
+   * @return the number of stages run
+   */
+  public int runCycle() {
+    long c = cycle;
+    int count = 0;
+    while (cycle == c && !isComplete()) {
+      step();
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Runs stages until the scheduler is complete. For a looping scheduler that
+   * is until {@link #stop()} is called.
+   * 
+   * @return the number of stages run
+   */
+  public long runToCompletion() {
+    long count = 0;
+    while (!isComplete()) {
+      step();
+      count++;
+    }
+    return count;
+  }
+
+  /**
+   * Makes the scheduler complete once the running stage, if any, returns.
+   */
+  public void stop() {
+    stopped = true;
+  }
+
+  /**
+   * Starts again at the first stage of cycle zero and clears a stop.
+   */
+  public void reset() {
+    if (running) {
+      throw new IllegalStateException("reset called from inside a stage");
+    }
+    next = 0;
+    cycle = 0;
+    stopped = false;
+  }
+
+  public boolean isComplete() {
+    return stopped || next >= keys.size();
+  }
+
+  /**
+   * @return the key of the stage the next {@link #step()} runs, or null if the
+   *         scheduler is complete
+   */
+  public K getNextStage() {
+    return isComplete() ? null : keys.get(next);
+  }
+
+  /**
+   * @return the number of completed cycles of a looping scheduler
+   */
+  public long getCycle() {
+    return cycle;
+  }
+
+  public int getStageCount() {
+    return keys.size();
+  }
+
+}
@@ -0,0 +1,165 @@
+package com.sudoplay.tkalgo;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.sudoplay.math.Vector2i;
+
+/**
+ * Keeps the cells sorted by their left edge and only tests cells whose
+ * x-intervals overlap.
+ * <p>
+ * The sort order is kept between passes and repaired with an insertion sort,
+ * which is close to linear because cells only move a few units per pass. A
+ * cell that moves during a pass is shifted back into place immediately so
+ * later cells in the same pass see its new position.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class SweepAndPruneOverlapEngine implements OverlapEngine {
+
+  private int size = -1;
+  private int[] order = new int[0];
+  private int[] position = new int[0];
+  private int[] left = new int[0];
+  private int[] width = new int[0];
+  private int[] candidates = new int[0];
+  private int maxWidth;
+
+  @Override
+  public boolean isAnyOverlap(CellStore store) {
+    int[] type = store.type;
+    Arrays.fill(type, 0, store.size, Cell.TYPE_NONE);
+    sort(store);
+    for (int k = 0; k < size; k++) {
+      int i = order[k];
+      int right = left[i] + width[i];
+      for (int m = k + 1; m < size && left[order[m]] < right; m++) {
+        if (Generator.isOverlap(store, i, order[m])) {
+          type[i] = Cell.TYPE_OVERLAP;
+          type[order[m]] = Cell.TYPE_OVERLAP;
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void moveCells(Random rand, CellStore store) {
+    sort(store);
+    Vector2i v = new Vector2i();
+    for (int i = 0; i < size; i++) {
+      v.set(0, 0);
+      int n = gather(i);
+      // visit in index order so the random sequence matches the brute force pass
+      Arrays.sort(candidates, 0, n);
+      for (int k = 0; k < n; k++) {
+        if (Generator.isOverlap(store, i, candidates[k])) {
+          Generator.moveCell(rand, store, i, candidates[k], v);
+        }
+      }
+      if (v.x != 0 || v.y != 0) {
+        store.centerX[i] += v.x;
+        store.centerY[i] += v.y;
+        left[i] = store.getLeft(i);
+        shift(i);
+      }
+    }
+  }
+
+  /**
+   * Brings the sort order up to date with the current cell positions.
+   */
+  private void sort(CellStore store) {
+    maxWidth = 0;
+    if (store.size != size) {
+      size = store.size;
+      order = new int[size];
+      position = new int[size];
+      left = new int[size];
+      width = new int[size];
+      candidates = new int[size];
+      long[] keys = new long[size];
+      for (int i = 0; i < size; i++) {
+        left[i] = store.getLeft(i);
+        keys[i] = ((long) left[i] << 32) | i;
+      }
+      Arrays.sort(keys);
+      for (int k = 0; k < size; k++) {
+        order[k] = (int) keys[k];
+        position[order[k]] = k;
+      }
+    } else {
+      for (int i = 0; i < size; i++) {
+        left[i] = store.getLeft(i);
+      }
+      for (int k = 1; k < size; k++) {
+        int id = order[k];
+        int m = k - 1;
+        while (m >= 0 && left[order[m]] > left[id]) {
+          order[m + 1] = order[m];
+          position[order[m + 1]] = m + 1;
+          m--;
+        }
+        order[m + 1] = id;
+        position[id] = m + 1;
+      }
+    }
+    for (int i = 0; i < size; i++) {
+      width[i] = store.getWidth(i);
+      maxWidth = Math.max(maxWidth, width[i]);
+    }
+  }
+
+  /**
+   * Moves a single cell to its sorted position after its left edge changed.
+   */
+  private void shift(int id) {
+    int k = position[id];
+    while (k > 0 && left[order[k - 1]] > left[id]) {
+      order[k] = order[k - 1];
+      position[order[k]] = k;
+      k--;
+    }
+    while (k < size - 1 && left[order[k + 1]] < left[id]) {
+      order[k] = order[k + 1];
+      position[order[k]] = k;
+      k++;
+    }
+    order[k] = id;
+    position[id] = k;
+  }
+
+  /**
+   * Collects the ids of every other cell whose x-interval overlaps the given
+   * cell into the candidates array.
+   * 
+   * @return the number of candidates
+   */
+  private int gather(int id) {
+    int l = left[id];
+    int r = l + width[id];
+    // no cell starting at or before l - maxWidth can reach past l
+    int lo = 0, hi = size;
+    int min = l - maxWidth;
+    while (lo < hi) {
+      int mid = (lo + hi) >>> 1;
+      if (left[order[mid]] <= min) {
+        lo = mid + 1;
+      } else {
+        hi = mid;
+      }
+    }
+    int n = 0;
+    for (int k = lo; k < size && left[order[k]] < r; k++) {
+      int j = order[k];
+      if (j != id && left[j] + width[j] > l) {
+        candidates[n++] = j;
+      }
+    }
+    return n;
+  }
+
+}
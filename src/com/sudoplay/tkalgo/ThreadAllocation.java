@@ -0,0 +1,51 @@
+package com.sudoplay.tkalgo;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * Reads the bytes allocated by the current thread where the JVM supports it.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+final class ThreadAllocation {
+
+  private static final com.sun.management.ThreadMXBean BEAN = getBean();
+
+  private ThreadAllocation() {
+    //
+  }
+
+  /**
+   * @return bytes allocated by the current thread so far, or -1 if not
+   *         supported
+   */
+  static long getAllocatedBytes() {
+    if (BEAN == null) {
+      return -1;
+    }
+    return BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+  }
+
+  private static com.sun.management.ThreadMXBean getBean() {
+    try {
+      ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+      if (bean instanceof com.sun.management.ThreadMXBean) {
+        com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean) bean;
+        if (sunBean.isThreadAllocatedMemorySupported()) {
+          if (!sunBean.isThreadAllocatedMemoryEnabled()) {
+            sunBean.setThreadAllocatedMemoryEnabled(true);
+          }
+          return sunBean;
+        }
+      }
+    } catch (UnsupportedOperationException e) {
+      // not measurable on this JVM
+    } catch (LinkageError e) {
+      // com.sun.management is missing
+    }
+    return null;
+  }
+
+}
@@ -0,0 +1,221 @@
+package com.sudoplay.tkalgo;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tile grid packed 2 or 4 bits per tile into a long[].
+ * <p>
+ * Rows are padded to whole words so each row starts on a word boundary;
+ * {@link #getRow(int, byte[])} unpacks a row word by word. Coordinates are
+ * world tile coordinates, as for cells; tiles outside the map read as
+ * {@link #EMPTY}.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class TileMap {
+
+  public static final int EMPTY = 0;
+  public static final int ROOM = 1;
+  public static final int CORRIDOR = 2;
+  public static final int FILLER = 3;
+
+  public static final int DEFAULT_BITS_PER_TILE = 2;
+
+  private final int left;
+  private final int bottom;
+  private final int width;
+  private final int height;
+  private final int bitsPerTile;
+  private final int tileShift;
+  private final int tilesPerWordShift;
+  private final long tileMask;
+  private final int wordsPerRow;
+  private final long[] words;
+
+  public TileMap(int left, int bottom, int width, int height, int bitsPerTile) {
+    if (bitsPerTile != 2 && bitsPerTile != 4) {
+      throw new IllegalArgumentException("bitsPerTile must be 2 or 4: " + bitsPerTile);
+    }
+    this.left = left;
+    this.bottom = bottom;
+    this.width = Math.max(width, 0);
+    this.height = Math.max(height, 0);
+    this.bitsPerTile = bitsPerTile;
+    tileShift = Integer.numberOfTrailingZeros(bitsPerTile);
+    tilesPerWordShift = 6 - tileShift;
+    tileMask = (1L << bitsPerTile) - 1;
+    wordsPerRow = (this.width + (1 << tilesPerWordShift) - 1) >>> tilesPerWordShift;
+    words = new long[wordsPerRow * this.height];
+  }
+
+  /**
+   * Rasterizes cells by type: rooms, fillers, and any other cell as corridor.
+   */
+  public static TileMap get(List<Cell> cells, CellBounds bounds, int bitsPerTile) {
+    TileMap map = new TileMap(bounds.getLeft(), bounds.getBottom(), bounds.getWidth(), bounds.getHeight(),
+        bitsPerTile);
+    for (int i = 0; i < cells.size(); i++) {
+      Cell cell = cells.get(i);
+      map.fill(cell.getLeft(), cell.getBottom(), cell.getRight(), cell.getTop(), getTile(cell));
+    }
+    return map;
+  }
+
+  public static int getTile(Cell cell) {
+    switch (cell.type) {
+    case Cell.TYPE_ROOM:
+      return ROOM;
+    case Cell.TYPE_FILL:
+      return FILLER;
+    default:
+      return CORRIDOR;
+    }
+  }
+
+  public int getLeft() {
+    return left;
+  }
+
+  public int getBottom() {
+    return bottom;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  public int getBitsPerTile() {
+    return bitsPerTile;
+  }
+
+  public int getWordsPerRow() {
+    return wordsPerRow;
+  }
+
+  /**
+   * @return word i of the row at world y; tile x of the row is at bit
+   *         (x - left) % tilesPerWord * bitsPerTile of word (x - left) /
+   *         tilesPerWord
+   */
+  public long getWord(int y, int i) {
+    return words[(y - bottom) * wordsPerRow + i];
+  }
+
+  public int get(int x, int y) {
+    int tx = x - left;
+    int ty = y - bottom;
+    if (tx < 0 || ty < 0 || tx >= width || ty >= height) {
+      return EMPTY;
+    }
+    long word = words[ty * wordsPerRow + (tx >>> tilesPerWordShift)];
+    return (int) ((word >>> ((tx & ((1 << tilesPerWordShift) - 1)) << tileShift)) & tileMask);
+  }
+
+  public void set(int x, int y, int tile) {
+    fill(x, y, x + 1, y + 1, tile);
+  }
+
+  /**
+   * Sets every tile in [x1, x2) x [y1, y2), clipped to the map, a word at a
+   * time.
+   */
+  public void fill(int x1, int y1, int x2, int y2, int tile) {
+    if (tile < 0 || tile > tileMask) {
+      throw new IllegalArgumentException("Tile out of range: " + tile);
+    }
+    int tx1 = Math.max(x1 - left, 0);
+    int tx2 = Math.min(x2 - left, width);
+    int ty1 = Math.max(y1 - bottom, 0);
+    int ty2 = Math.min(y2 - bottom, height);
+    if (tx1 >= tx2 || ty1 >= ty2) {
+      return;
+    }
+    long pattern = 0;
+    for (int i = 0; i < 64; i += bitsPerTile) {
+      pattern |= (long) tile << i;
+    }
+    int w1 = tx1 >>> tilesPerWordShift;
+    int w2 = (tx2 - 1) >>> tilesPerWordShift;
+    // bit offsets of the first tile and one past the last tile within their words
+    int b1 = (tx1 << tileShift) & 63;
+    int b2 = (((tx2 - 1) << tileShift) & 63) + bitsPerTile;
+    long firstMask = -1L << b1;
+    long lastMask = b2 == 64 ? -1L : (1L << b2) - 1;
+    for (int ty = ty1; ty < ty2; ty++) {
+      int row = ty * wordsPerRow;
+      if (w1 == w2) {
+        long m = firstMask & lastMask;
+        words[row + w1] = (words[row + w1] & ~m) | (pattern & m);
+        continue;
+      }
+      words[row + w1] = (words[row + w1] & ~firstMask) | (pattern & firstMask);
+      for (int w = w1 + 1; w < w2; w++) {
+        words[row + w] = pattern;
+      }
+      words[row + w2] = (words[row + w2] & ~lastMask) | (pattern & lastMask);
+    }
+  }
+
+  /**
+   * Unpacks the row at world y, one tile per byte from the left edge.
+   * 
+   * @param dst
+   *          reused if at least as long as the width
+   */
+  public byte[] getRow(int y, byte[] dst) {
+    if (dst == null || dst.length < width) {
+      dst = new byte[width];
+    }
+    int ty = y - bottom;
+    if (ty < 0 || ty >= height) {
+      Arrays.fill(dst, 0, width, (byte) EMPTY);
+      return dst;
+    }
+    int row = ty * wordsPerRow;
+    int perWord = 1 << tilesPerWordShift;
+    int x = 0;
+    for (int w = 0; w < wordsPerRow; w++) {
+      long word = words[row + w];
+      int end = Math.min(x + perWord, width);
+      for (; x < end; x++) {
+        dst[x] = (byte) (word & tileMask);
+        word >>>= bitsPerTile;
+      }
+    }
+    return dst;
+  }
+
+  /**
+   * @return the number of tiles with the value
+   */
+  public int count(int tile) {
+    int n = 0;
+    byte[] row = null;
+    for (int y = bottom; y < bottom + height; y++) {
+      row = getRow(y, row);
+      for (int x = 0; x < width; x++) {
+        if (row[x] == tile) {
+          n++;
+        }
+      }
+    }
+    return n;
+  }
+
+  long[] getWords() {
+    return words;
+  }
+
+  @Override
+  public String toString() {
+    return "TileMap [left=" + left + ", bottom=" + bottom + ", width=" + width + ", height=" + height
+        + ", bitsPerTile=" + bitsPerTile + "]";
+  }
+
+}
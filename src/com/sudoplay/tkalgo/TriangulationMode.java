@@ -0,0 +1,23 @@
+package com.sudoplay.tkalgo;
+
+/**
+ * Selects how room centers are triangulated.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public enum TriangulationMode {
+
+  /**
+   * Incremental triangulation from the math library, building an object
+   * graph of points and triangles.
+   */
+  EXTERNAL,
+
+  /**
+   * {@link DelaunayTriangulator} over the integer room centers, producing
+   * vertex-indexed edges directly.
+   */
+  BUILT_IN
+
+}
@@ -0,0 +1,190 @@
+package com.sudoplay.tkalgo;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import com.sudoplay.math.Vector2i;
+
+/**
+ * Buckets cells into a uniform grid so that each cell is only tested against
+ * the cells that share a bucket with it.
+ * <p>
+ * The grid is rebuilt at the start of each pass and updated as cells move
+ * during the pass. Bucket size is the average cell extent rounded up to a
+ * power of two; cells that move past the edge of the grid are kept in the
+ * border buckets.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+public class UniformGridOverlapEngine implements OverlapEngine {
+
+  private int shift;
+  private int originX;
+  private int originY;
+  private int gridWidth;
+  private int gridHeight;
+
+  private int[][] buckets = new int[0][];
+  private int[] bucketCount = new int[0];
+
+  private int[] seen = new int[0];
+  private int[] candidates = new int[0];
+  private int query;
+
+  @Override
+  public boolean isAnyOverlap(CellStore store) {
+    int[] type = store.type;
+    Arrays.fill(type, 0, store.size, Cell.TYPE_NONE);
+    rebuild(store);
+    for (int i = 0; i < store.size; i++) {
+      int n = gather(store, i);
+      for (int k = 0; k < n; k++) {
+        if (Generator.isOverlap(store, i, candidates[k])) {
+          type[i] = Cell.TYPE_OVERLAP;
+          type[candidates[k]] = Cell.TYPE_OVERLAP;
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  @Override
+  public void moveCells(Random rand, CellStore store) {
+    rebuild(store);
+    Vector2i v = new Vector2i();
+    for (int i = 0; i < store.size; i++) {
+      v.set(0, 0);
+      int n = gather(store, i);
+      // visit in index order so the random sequence matches the brute force pass
+      Arrays.sort(candidates, 0, n);
+      for (int k = 0; k < n; k++) {
+        if (Generator.isOverlap(store, i, candidates[k])) {
+          Generator.moveCell(rand, store, i, candidates[k], v);
+        }
+      }
+      if (v.x != 0 || v.y != 0) {
+        remove(store, i);
+        store.centerX[i] += v.x;
+        store.centerY[i] += v.y;
+        insert(store, i);
+      }
+    }
+  }
+
+  private void rebuild(CellStore store) {
+    if (store.size == 0) {
+      gridWidth = 0;
+      gridHeight = 0;
+      return;
+    }
+    int xmin = Integer.MAX_VALUE, xmax = Integer.MIN_VALUE;
+    int ymin = Integer.MAX_VALUE, ymax = Integer.MIN_VALUE;
+    long extent = 0;
+    for (int i = 0; i < store.size; i++) {
+      xmin = Math.min(xmin, store.getLeft(i));
+      xmax = Math.max(xmax, store.getRight(i) - 1);
+      ymin = Math.min(ymin, store.getBottom(i));
+      ymax = Math.max(ymax, store.getTop(i) - 1);
+      extent += Math.max(store.getWidth(i), store.getHeight(i));
+    }
+    int size = (int) (extent / store.size);
+    shift = 32 - Integer.numberOfLeadingZeros(Math.max(size - 1, 0));
+    originX = xmin;
+    originY = ymin;
+    gridWidth = ((xmax - xmin) >> shift) + 1;
+    gridHeight = ((ymax - ymin) >> shift) + 1;
+
+    int count = gridWidth * gridHeight;
+    if (buckets.length < count) {
+      buckets = Arrays.copyOf(buckets, count);
+      bucketCount = new int[count];
+    } else {
+      Arrays.fill(bucketCount, 0, count, 0);
+    }
+    if (seen.length < store.size) {
+      seen = new int[store.size];
+      candidates = new int[store.size];
+      query = 0;
+    }
+    for (int i = 0; i < store.size; i++) {
+      insert(store, i);
+    }
+  }
+
+  private int bucketX(int x) {
+    x = (x - originX) >> shift;
+    return x < 0 ? 0 : (x >= gridWidth ? gridWidth - 1 : x);
+  }
+
+  private int bucketY(int y) {
+    y = (y - originY) >> shift;
+    return y < 0 ? 0 : (y >= gridHeight ? gridHeight - 1 : y);
+  }
+
+  private void insert(CellStore store, int id) {
+    int bx1 = bucketX(store.getLeft(id)), bx2 = bucketX(store.getRight(id) - 1);
+    int by1 = bucketY(store.getBottom(id)), by2 = bucketY(store.getTop(id) - 1);
+    for (int by = by1; by <= by2; by++) {
+      for (int bx = bx1; bx <= bx2; bx++) {
+        int b = by * gridWidth + bx;
+        int[] bucket = buckets[b];
+        if (bucket == null) {
+          bucket = buckets[b] = new int[8];
+        } else if (bucketCount[b] == bucket.length) {
+          bucket = buckets[b] = Arrays.copyOf(bucket, bucket.length << 1);
+        }
+        bucket[bucketCount[b]++] = id;
+      }
+    }
+  }
+
+  private void remove(CellStore store, int id) {
+    int bx1 = bucketX(store.getLeft(id)), bx2 = bucketX(store.getRight(id) - 1);
+    int by1 = bucketY(store.getBottom(id)), by2 = bucketY(store.getTop(id) - 1);
+    for (int by = by1; by <= by2; by++) {
+      for (int bx = bx1; bx <= bx2; bx++) {
+        int b = by * gridWidth + bx;
+        int[] bucket = buckets[b];
+        for (int k = 0; k < bucketCount[b]; k++) {
+          if (bucket[k] == id) {
+            bucket[k] = bucket[--bucketCount[b]];
+            break;
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Collects the ids of every other cell sharing a bucket with the given cell,
+   * without duplicates, into the candidates array.
+   * 
+   * @return the number of candidates
+   */
+  private int gather(CellStore store, int id) {
+    if (++query == 0) {
+      Arrays.fill(seen, 0);
+      query = 1;
+    }
+    int n = 0;
+    int bx1 = bucketX(store.getLeft(id)), bx2 = bucketX(store.getRight(id) - 1);
+    int by1 = bucketY(store.getBottom(id)), by2 = bucketY(store.getTop(id) - 1);
+    for (int by = by1; by <= by2; by++) {
+      for (int bx = bx1; bx <= bx2; bx++) {
+        int b = by * gridWidth + bx;
+        int[] bucket = buckets[b];
+        for (int k = 0; k < bucketCount[b]; k++) {
+          int j = bucket[k];
+          if (j != id && seen[j] != query) {
+            seen[j] = query;
+            candidates[n++] = j;
+          }
+        }
+      }
+    }
+    return n;
+  }
+
+}
@@ -5,6 +5,8 @@ import java.util.Random;
 /**
  * Not thread safe.
  * <p>
+ * Gaussians come from a {@link Ziggurat} rather than the polar method
+ * inherited from {@link Random}.
  * 
  * @author Jason Taylor
  * 
@@ -22,6 +24,17 @@ public class XORShiftRandom extends Random {
     this.seed = seed;
   }
 
+  /**
+   * @return the whole state, which {@link #setState(long)} restores
+   */
+  long getState() {
+    return seed;
+  }
+
+  void setState(long state) {
+    this.seed = state;
+  }
+
   protected int next(int nbits) {
     // not thread-safe!
     long x = this.seed;
@@ -43,4 +56,63 @@ public class XORShiftRandom extends Random {
     return (long) x;
   }
 
+  /**
+   * Ziggurat sample from the standard normal distribution.
+   */
+  @Override
+  public double nextGaussian() {
+    return Ziggurat.nextGaussian(this);
+  }
+
+  /**
+   * @return the absolute value of a standard normal sample, clamped to max
+   */
+  public double nextHalfGaussian(double max) {
+    double g = nextGaussian();
+    g = g < 0 ? -g : g;
+    return g > max ? max : g;
+  }
+
+  /**
+   * Fills values[offset, offset + length) with uniform ints, two per step.
+   */
+  public void fillInts(int[] values, int offset, int length) {
+    long x = this.seed;
+    int end = offset + length;
+    int i = offset;
+    while (i < end) {
+      x ^= (x << 21);
+      x ^= (x >>> 35);
+      x ^= (x << 4);
+      values[i++] = (int) (x >>> 32);
+      if (i < end) {
+        values[i++] = (int) x;
+      }
+    }
+    this.seed = x;
+  }
+
+  /**
+   * Fills values[offset, offset + length) with standard normal samples, the
+   * same as calling {@link #nextGaussian()} for each.
+   */
+  public void fillGaussians(double[] values, int offset, int length) {
+    long x = this.seed;
+    int end = offset + length;
+    for (int i = offset; i < end; i++) {
+      x ^= (x << 21);
+      x ^= (x >>> 35);
+      x ^= (x << 4);
+      double g = Ziggurat.nextFast(x);
+      if (g != g) {
+        // the rare rejections draw more values through the field
+        this.seed = x;
+        g = Ziggurat.nextGaussian(this, x);
+        x = this.seed;
+      }
+      values[i] = g;
+    }
+    this.seed = x;
+  }
+
 }
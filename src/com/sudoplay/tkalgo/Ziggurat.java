@@ -0,0 +1,95 @@
+package com.sudoplay.tkalgo;
+
+import java.util.Random;
+
+/**
+ * 128-layer ziggurat for standard normal samples (Marsaglia and Tsang, with
+ * Doornik's layer tables).
+ * <p>
+ * Most samples cost one {@link Random#nextLong()}, a table lookup and a
+ * multiply: the low 7 bits select the layer and the top 53 bits give the
+ * uniform.
+ * 
+ * @author Jason Taylor
+ * 
+ */
+final class Ziggurat {
+
+  private static final int LAYERS = 128;
+  private static final double R = 3.442619855899;
+  private static final double V = 9.91256303526217e-3;
+  private static final double[] X = new double[LAYERS + 1];
+  private static final double[] RATIO = new double[LAYERS];
+  private static final double DOUBLE_UNIT = 1.0 / (1L << 53);
+
+  static {
+    double f = Math.exp(-0.5 * R * R);
+    X[0] = V / f;
+    X[1] = R;
+    X[LAYERS] = 0;
+    for (int i = 2; i < LAYERS; i++) {
+      X[i] = Math.sqrt(-2 * Math.log(V / X[i - 1] + f));
+      f = Math.exp(-0.5 * X[i] * X[i]);
+    }
+    for (int i = 0; i < LAYERS; i++) {
+      RATIO[i] = X[i + 1] / X[i];
+    }
+  }
+
+  private Ziggurat() {
+    //
+  }
+
+  static double nextGaussian(Random rand) {
+    return nextGaussian(rand, rand.nextLong());
+  }
+
+  /**
+   * @return the sample for the bits of one {@link Random#nextLong()} if they
+   *         fall inside their layer, as most do, else NaN
+   */
+  static double nextFast(long bits) {
+    int i = (int) bits & (LAYERS - 1);
+    double u = 2 * ((bits >>> 11) * DOUBLE_UNIT) - 1;
+    return Math.abs(u) < RATIO[i] ? u * X[i] : Double.NaN;
+  }
+
+  /**
+   * Samples starting from the bits of a {@link Random#nextLong()} already
+   * drawn from rand, drawing more from rand if they are rejected.
+   */
+  static double nextGaussian(Random rand, long bits) {
+    while (true) {
+      int i = (int) bits & (LAYERS - 1);
+      // the top 53 bits do not overlap the layer bits
+      double u = 2 * ((bits >>> 11) * DOUBLE_UNIT) - 1;
+      if (Math.abs(u) < RATIO[i]) {
+        return u * X[i];
+      }
+      if (i == 0) {
+        return nextTail(rand, u < 0);
+      }
+      double x = u * X[i];
+      double f0 = Math.exp(-0.5 * (X[i] * X[i] - x * x));
+      double f1 = Math.exp(-0.5 * (X[i + 1] * X[i + 1] - x * x));
+      if (f1 + rand.nextDouble() * (f0 - f1) < 1.0) {
+        return x;
+      }
+      bits = rand.nextLong();
+    }
+  }
+
+  /**
+   * Samples beyond R from the exponential-rejection tail.
+   */
+  private static double nextTail(Random rand, boolean negative) {
+    double x, y;
+    do {
+      // uniforms in (0, 1] so the logs are finite
+      x = Math.log(((rand.nextLong() >>> 11) + 1) * DOUBLE_UNIT) / R;
+      y = Math.log(((rand.nextLong() >>> 11) + 1) * DOUBLE_UNIT);
+    } while (-2 * y < x * x);
+    return negative ? x - R : R - x;
+  }
+
+}